@@ -0,0 +1,20 @@
+package com.example.final_year_project;
+
+import android.app.Application;
+
+import androidx.lifecycle.ProcessLifecycleOwner;
+
+import com.example.final_year_project.firebase.ChatNotifications;
+import com.example.final_year_project.firebase.Presence;
+import com.example.final_year_project.utilities.StartupMetrics;
+
+public class ChatApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        StartupMetrics.markProcessStart();
+        ChatNotifications.createChannel(this);
+        ProcessLifecycleOwner.get().getLifecycle().addObserver(Presence.getInstance(this));
+    }
+}
@@ -1,57 +1,91 @@
 package com.example.final_year_project.activities;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
-import android.util.Base64;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.View;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.Lifecycle;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.final_year_project.adapters.ChatAdapter;
+import com.example.final_year_project.database.LocalStore;
 import com.example.final_year_project.databinding.ActivityChatBinding;
+import com.example.final_year_project.firebase.ChatNotifications;
+import com.example.final_year_project.firebase.LegacyMigration;
+import com.example.final_year_project.firebase.Outbox;
 import com.example.final_year_project.firebase.PreferenceManager;
+import com.example.final_year_project.firebase.Presence;
+import com.example.final_year_project.firebase.SubscriptionHub;
+import com.example.final_year_project.listeners.ChatListener;
 import com.example.final_year_project.models.ChatMessages;
+import com.example.final_year_project.models.OutgoingMessage;
 import com.example.final_year_project.models.User;
-import com.example.final_year_project.network.ApiClient;
-import com.example.final_year_project.network.ApiService;
+import com.example.final_year_project.network.NotificationDispatcher;
+import com.example.final_year_project.translation.TranslationCache;
+import com.example.final_year_project.utilities.Channels;
 import com.example.final_year_project.utilities.Constants;
+import com.example.final_year_project.utilities.ImageLoader;
+import com.example.final_year_project.utilities.MessageList;
+import com.example.final_year_project.utilities.UserCache;
 import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.DocumentChange;
-import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Objects;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 
-public class ChatActivity extends BaseActivity {
+public class ChatActivity extends AppCompatActivity implements ChatListener {
+
+    private static final long RETRY_INITIAL_MS = 1000;
+    private static final long RETRY_MAX_MS = 60000;
 
     private ActivityChatBinding binding;
     private User receiverUser;
-    private List<ChatMessages> chatMessages;
+    private MessageList chatMessages;
     private ChatAdapter chatAdapter;
     private PreferenceManager preferenceManager;
     private FirebaseFirestore database;
+    private LocalStore localStore;
+    private Outbox outbox;
     private String conversionId = null;
-    private Boolean isReceiverAvailable = false;
+    private String channelId;
+    private long receiverOnlineUntil = 0;
+    private Date oldestLoaded = null;
+    private boolean hasMoreHistory = true;
+    private boolean isLoadingOlder = false;
+    private boolean isListening = false;
+    private int latestAttempts = 0;
+    private int profileAttempts = 0;
+    private int pendingConversionChecks = 0;
+    private boolean conversionChecked = false;
+    private boolean legacyChecked = false;
+    private boolean receiverTokenKnown = false;
+    private boolean receiverTokenRequested = false;
+    private final List<OutgoingMessage> pendingPushes = new ArrayList<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private boolean autoTranslate = false;
+    private boolean translateOutgoing = false;
+    private String receiverLanguage;
 
     private String defaultLang = "English";
 
@@ -63,148 +97,471 @@ public class ChatActivity extends BaseActivity {
         setListeners();
         loadReceiverDetails();
         init();
+        checkForConversion();
         listenMessages();
+        loadReceiverProfile();
+        listenAvailabilityOfReceiver();
     }
 
     private void init() {
         preferenceManager = new PreferenceManager(getApplicationContext());
-        chatMessages = new ArrayList<>();
+        chatMessages = new MessageList();
         chatAdapter = new ChatAdapter(
-                chatMessages,
-                getBitmapFromEncodedString(receiverUser.image),
-                preferenceManager.getString(Constants.KEY_USER_ID),
-                preferenceManager.getString(Constants.KEY_LANGUAGE)
+                null,
+                preferenceManager.getUserId(),
+                preferenceManager.getLanguage(),
+                this
         );
+        autoTranslate = preferenceManager.getBoolean(Constants.KEY_AUTO_TRANSLATE);
+        chatAdapter.setAutoTranslate(autoTranslate);
+        translateOutgoing = preferenceManager.getBoolean(Constants.KEY_TRANSLATE_OUTGOING);
+        chatAdapter.setTranslateOutgoing(translateOutgoing);
         binding.chatRecyclerView.setAdapter(chatAdapter);
+        loadReceiverImage();
+        binding.chatRecyclerView.addOnScrollListener(scrollListener);
         database = FirebaseFirestore.getInstance();
+        localStore = LocalStore.getInstance(getApplicationContext());
+        outbox = Outbox.getInstance(getApplicationContext());
+        outbox.flush();
+        channelId = Channels.getChannelId(preferenceManager.getUserId(), receiverUser.id);
     }
 
     private void sendMessage() {
-        HashMap<String, Object> message = new HashMap<>();
-        message.put(Constants.KEY_SENDER_ID, preferenceManager.getString(Constants.KEY_USER_ID));
-        message.put(Constants.KEY_RECEIVER_ID, receiverUser.id);
-        message.put(Constants.KEY_MESSAGE, binding.inputMessage.getText().toString());
-        message.put(Constants.KEY_TIMESTAMP, new Date());
-        database.collection(Constants.KEY_COLLECTION_CHAT).add(message);
-        if(conversionId != null) {
-            updateConversion(binding.inputMessage.getText().toString());
-        } else {
-            HashMap<String, Object> conversion = new HashMap<>();
-            conversion.put(Constants.KEY_SENDER_ID, preferenceManager.getString(Constants.KEY_USER_ID));
-            conversion.put(Constants.KEY_SENDER_NAME, preferenceManager.getString(Constants.KEY_NAME));
-            conversion.put(Constants.KEY_SENDER_IMAGE, preferenceManager.getString(Constants.KEY_IMAGE));
-            conversion.put(Constants.KEY_RECEIVER_ID, receiverUser.id);
-            conversion.put(Constants.KEY_RECEIVER_NAME, receiverUser.name);
-            conversion.put(Constants.KEY_RECEIVER_IMAGE, receiverUser.image);
-            conversion.put(Constants.KEY_LAST_MESSAGE, binding.inputMessage.getText().toString());
-            conversion.put(Constants.KEY_TIMESTAMP, new Date());
-            addConversion(conversion);
+        OutgoingMessage outgoingMessage = new OutgoingMessage();
+        outgoingMessage.id = outbox.newMessageId(channelId);
+        outgoingMessage.channelId = channelId;
+        outgoingMessage.conversationId = conversionId != null ? conversionId : channelId;
+        outgoingMessage.newConversation = conversionId == null;
+        outgoingMessage.senderId = preferenceManager.getUserId();
+        outgoingMessage.senderName = preferenceManager.getName();
+        outgoingMessage.senderImageHash = preferenceManager.getString(Constants.KEY_IMAGE_HASH);
+        if(outgoingMessage.senderImageHash == null) {
+            outgoingMessage.senderImage = preferenceManager.getString(Constants.KEY_IMAGE);
         }
-        if(!isReceiverAvailable) {
-            try{
-                JSONArray tokens = new JSONArray();
-                tokens.put(receiverUser.token);
-
-                JSONObject data = new JSONObject();
-                data.put(Constants.KEY_USER_ID, preferenceManager.getString(Constants.KEY_USER_ID));
-                data.put(Constants.KEY_NAME, preferenceManager.getString(Constants.KEY_NAME));
-                data.put(Constants.KEY_FCM_TOKEN, preferenceManager.getString(Constants.KEY_FCM_TOKEN));
-                data.put(Constants.KEY_MESSAGE, binding.inputMessage.getText().toString());
-
-                JSONObject body = new JSONObject();
-                body.put(Constants.REMOTE_MSG_DATA, data);
-                body.put(Constants.REMOTE_MSG_REGISTRATION_IDS, tokens);
-
-                sendNotification(body.toString());
-            }catch (Exception exception) {
-                showToast(exception.getMessage());
-            }
-
+        outgoingMessage.receiverId = receiverUser.id;
+        outgoingMessage.receiverName = receiverUser.name;
+        outgoingMessage.receiverImage = receiverUser.image;
+        outgoingMessage.receiverImageHash = receiverUser.imageHash;
+        outgoingMessage.message = binding.inputMessage.getText().toString();
+        outgoingMessage.timestamp = new Date();
+        conversionId = outgoingMessage.conversationId;
+        enqueue(outgoingMessage);
+        // The message is durable before any model work starts; the translation follows as its own
+        // write whenever the model is available, which may be only once the device is on Wi-Fi.
+        if(translateOutgoing && receiverLanguage != null
+                && !receiverLanguage.equals(preferenceManager.getLanguage())) {
+            String targetLanguage = receiverLanguage;
+            TranslationCache.getInstance(getApplicationContext()).translate(
+                    outgoingMessage.id,
+                    outgoingMessage.message,
+                    targetLanguage,
+                    translation -> {
+                        if(translation != null && !translation.equals(outgoingMessage.message)) {
+                            outbox.attachTranslation(outgoingMessage, translation, targetLanguage);
+                        }
+                    });
         }
 
         binding.inputMessage.setText(null);
 
     }
 
+    private void enqueue(OutgoingMessage outgoingMessage) {
+        outbox.enqueue(outgoingMessage);
+        if(!receiverTokenKnown) {
+            pendingPushes.add(outgoingMessage);
+            return;
+        }
+        push(outgoingMessage);
+    }
+
+    private void push(OutgoingMessage outgoingMessage) {
+        if(!isReceiverAvailable() && receiverUser.token != null) {
+            NotificationDispatcher.getInstance().dispatch(
+                    outgoingMessage,
+                    Collections.singletonList(receiverUser.token),
+                    preferenceManager.getString(Constants.KEY_FCM_TOKEN)
+            );
+        }
+    }
+
     private void showToast(String message) {
         Toast.makeText(getApplicationContext(), message, Toast.LENGTH_SHORT).show();
     }
 
-    private void sendNotification(String messageBody) {
-        ApiClient.getClient().create(ApiService.class).sendMessage(
-                Constants.getRemoteMsgHeaders(),
-                messageBody
-        ).enqueue(new Callback<String>() {
-            @Override
-            public void onResponse(@NonNull Call<String> call, @NonNull Response<String> response) {
-                if(response.isSuccessful()) {
-                    try {
-                        if(response.body() != null) {
-                            JSONObject responseJson = new JSONObject(response.body());
-                            JSONArray results = responseJson.getJSONArray("results");
-                            if(responseJson.getInt("failure") == 1) {
-                                JSONObject error = (JSONObject) results.get(0);
-                                showToast(error.getString("error"));
-                                return;
-                            }
-                        }
+    // The directory entry holds what this screen needs; only receivers missing from it, or older
+    // accounts whose image is stored inline, are read from the full user document.
+    private void loadReceiverProfile() {
+        database.collection(Constants.KEY_COLLECTION_DIRECTORY)
+                .document(receiverUser.id)
+                .get()
+                .onSuccessTask(entry -> {
+                    boolean needsInlineImage = receiverUser.image == null && receiverUser.imageHash == null
+                            && entry.getString(Constants.KEY_IMAGE_HASH) == null;
+                    if(entry.exists() && !needsInlineImage) {
+                        return Tasks.forResult(entry);
+                    }
+                    return database.collection(Constants.KEY_COLLECTION_USERS).document(receiverUser.id).get();
+                })
+                .addOnSuccessListener(documentSnapshot -> {
+                    if(receiverUser.name == null) {
+                        receiverUser.name = documentSnapshot.getString(Constants.KEY_NAME);
+                        binding.textName.setText(receiverUser.name);
+                    }
+                    receiverLanguage = documentSnapshot.getString(Constants.KEY_LANGUAGE);
+                    if(receiverUser.image == null && receiverUser.imageHash == null) {
+                        receiverUser.image = documentSnapshot.getString(Constants.KEY_IMAGE);
+                        receiverUser.imageHash = documentSnapshot.getString(Constants.KEY_IMAGE_HASH);
+                        loadReceiverImage();
+                    }
+                    updateSendEnabled();
+                })
+                .addOnFailureListener(e -> {
+                    // Only an id-only user is missing what a new conversation summary needs.
+                    if(receiverUser.name == null && !isDestroyed()) {
+                        long delay = Math.min(RETRY_MAX_MS, RETRY_INITIAL_MS << Math.min(profileAttempts, 6));
+                        profileAttempts++;
+                        handler.postDelayed(this::loadReceiverProfile, delay);
+                    }
+                });
+    }
+
+    // Sending needs the receiver's profile for a new summary, and must know whether an older summary
+    // for this pair exists so it is not duplicated.
+    private void updateSendEnabled() {
+        boolean enabled = conversionChecked && receiverUser.name != null;
+        binding.layoutSend.setEnabled(enabled);
+        binding.layoutSend.setAlpha(enabled ? 1f : 0.5f);
+    }
 
-                    }catch (JSONException e) {
-                        e.printStackTrace();
+    private void listenAvailabilityOfReceiver() {
+        SubscriptionHub.getInstance().subscribe(this,
+                database.collection(Constants.KEY_COLLECTION_PRESENCE).document(receiverUser.id),
+                (value, error) -> {
+                    if(error != null) {
+                        return;
+                    }
+                    receiverOnlineUntil = Presence.getInstance(getApplicationContext()).onlineUntil(value);
+                    showAvailability.run();
+                    if(value != null && value.contains(Constants.KEY_FCM_TOKEN)) {
+                        onReceiverToken(value.getString(Constants.KEY_FCM_TOKEN));
+                    } else if(!receiverTokenRequested) {
+                        loadReceiverToken();
                     }
-                    showToast("Notification sent successfully");
+                });
+    }
 
-                }else {
-                    showToast("Error: " + response.code());
-                }
+    // Receivers still on a version that keeps the token only on the user document.
+    private void loadReceiverToken() {
+        receiverTokenRequested = true;
+        database.collection(Constants.KEY_COLLECTION_USERS)
+                .document(receiverUser.id)
+                .get()
+                .addOnSuccessListener(documentSnapshot -> onReceiverToken(documentSnapshot.getString(Constants.KEY_FCM_TOKEN)))
+                .addOnFailureListener(e -> receiverTokenRequested = false);
+    }
+
+    // Messages sent before the token was known are pushed now, so a quick first message is not left
+    // without a notification.
+    private void onReceiverToken(String token) {
+        receiverUser.token = token;
+        receiverTokenKnown = true;
+        for(OutgoingMessage outgoingMessage : pendingPushes) {
+            push(outgoingMessage);
+        }
+        pendingPushes.clear();
+    }
+
+    private boolean isReceiverAvailable() {
+        return System.currentTimeMillis() < receiverOnlineUntil;
+    }
+
+    // The receiver's presence document stops changing if its process is killed, so the indicator
+    // is also switched off on a timer once the last heartbeat goes stale.
+    private final Runnable showAvailability = new Runnable() {
+        @Override
+        public void run() {
+            handler.removeCallbacks(this);
+            if(isReceiverAvailable()) {
+                binding.textAvailability.setVisibility(View.VISIBLE);
+                handler.postDelayed(this, receiverOnlineUntil - System.currentTimeMillis());
+            }else {
+                binding.textAvailability.setVisibility(View.GONE);
             }
+        }
+    };
+
+    private CollectionReference messagesReference() {
+        return database.collection(Constants.KEY_COLLECTION_CHANNELS)
+                .document(channelId)
+                .collection(Constants.KEY_COLLECTION_MESSAGES);
+    }
 
-            @Override
-            public void onFailure(@NonNull Call<String> call, @NonNull Throwable t) {
-                showToast(t.getMessage());
+    private void listenMessages() {
+        localStore.loadMessages(channelId, null, Constants.MESSAGE_PAGE_SIZE, cached -> {
+            if(cached.size() > 0) {
+                oldestLoaded = cached.get(0).dataObject;
+                chatMessages.prepend(withReadableDateTime(cached));
+                chatAdapter.submitList(chatMessages.snapshot(), () ->
+                        binding.chatRecyclerView.scrollToPosition(chatAdapter.getItemCount() - 1));
+                binding.chatRecyclerView.setVisibility(View.VISIBLE);
+                binding.progressBar.setVisibility(View.GONE);
             }
+            localStore.loadWatermark(channelId, watermark -> {
+                if(watermark != null) {
+                    listenNewMessages(watermark);
+                } else {
+                    loadLatestMessages();
+                }
+            });
         });
     }
 
-    private void listenAvailabilityOfReceiver() {
-        database.collection(Constants.KEY_COLLECTION_USERS).document(
-                receiverUser.id
-        ).addSnapshotListener(ChatActivity.this, (value, error) -> {
-            if(error != null) {
+    private void loadLatestMessages() {
+        Date requestedAt = new Date();
+        messagesReference()
+                .orderBy(Constants.KEY_TIMESTAMP, Query.Direction.DESCENDING)
+                .limit(Constants.MESSAGE_PAGE_SIZE)
+                .get()
+                .addOnCompleteListener(task -> {
+                    if(isDestroyed()) {
+                        return;
+                    }
+                    QuerySnapshot result = task.isSuccessful() ? task.getResult() : null;
+                    if(result == null || (result.isEmpty() && result.getMetadata().isFromCache())) {
+                        // Nothing is known about the history yet: follow only what arrives from now
+                        // on and ask for the latest page again, never listening to the whole channel.
+                        listenNewMessages(requestedAt);
+                        long delay = Math.min(RETRY_MAX_MS, RETRY_INITIAL_MS << Math.min(latestAttempts, 6));
+                        latestAttempts++;
+                        handler.postDelayed(this::loadLatestMessages, delay);
+                        return;
+                    }
+                    List<ChatMessages> page = toPage(result);
+                    if(page.isEmpty() && !legacyChecked) {
+                        migrateLegacyHistory();
+                    }
+                    hasMoreHistory = page.size() == Constants.MESSAGE_PAGE_SIZE;
+                    Date newest = requestedAt;
+                    if(page.size() > 0) {
+                        oldestLoaded = page.get(0).dataObject;
+                        newest = page.get(page.size() - 1).dataObject;
+                        chatMessages.prepend(page);
+                        chatAdapter.submitList(chatMessages.snapshot(), () ->
+                                binding.chatRecyclerView.scrollToPosition(chatAdapter.getItemCount() - 1));
+                        // A page served from the cache may not be the newest on the server.
+                        localStore.saveMessages(channelId, page, result.getMetadata().isFromCache() ? null : newest);
+                    }
+                    listenNewMessages(newest);
+                });
+    }
+
+    // The channel may be empty only because its history is still in the flat chat collection.
+    private void migrateLegacyHistory() {
+        legacyChecked = true;
+        LegacyMigration.migrateChannel(preferenceManager.getUserId(), receiverUser.id)
+                .addOnSuccessListener(copied -> {
+                    if(copied > 0 && !isDestroyed()) {
+                        loadLatestMessages();
+                    }
+                });
+    }
+
+    private void listenNewMessages(Date after) {
+        if(isListening) {
+            return;
+        }
+        isListening = true;
+        // Timestamps come from the senders' clocks, so look back a little past the watermark.
+        Query live = messagesReference()
+                .whereGreaterThan(Constants.KEY_TIMESTAMP, new Date(after.getTime() - Constants.WATERMARK_MARGIN_MS))
+                .orderBy(Constants.KEY_TIMESTAMP);
+        // Keyed by channel so a reopened chat joins the listener still attached from its last visit.
+        SubscriptionHub.getInstance().subscribe(this, channelId, live, MetadataChanges.INCLUDE, eventListener);
+    }
+
+    private void loadOlderMessages() {
+        if(isLoadingOlder || !hasMoreHistory || oldestLoaded == null) {
+            return;
+        }
+        isLoadingOlder = true;
+        localStore.loadMessages(channelId, oldestLoaded, Constants.MESSAGE_PAGE_SIZE, cached -> {
+            if(cached.size() == Constants.MESSAGE_PAGE_SIZE) {
+                isLoadingOlder = false;
+                showOlderMessages(withReadableDateTime(cached));
                 return;
             }
-            if(value != null) {
-                if(value.getLong(Constants.KEY_AVAILABILITY) != null) {
-                    int availability = Objects.requireNonNull(
-                            value.getLong(Constants.KEY_AVAILABILITY)
-                    ).intValue();
-                    isReceiverAvailable = availability == 1;
-                }
-                receiverUser.token = value.getString(Constants.KEY_FCM_TOKEN);
-                if(receiverUser.image == null) {
-                    receiverUser.image = value.getString(Constants.KEY_IMAGE);
-                    chatAdapter.setReceiverProfileImage(getBitmapFromEncodedString(receiverUser.image));
-                    chatAdapter.notifyItemRangeChanged(0, chatMessages.size());
-                }
+            int remaining = Constants.MESSAGE_PAGE_SIZE - cached.size();
+            messagesReference()
+                    .orderBy(Constants.KEY_TIMESTAMP, Query.Direction.DESCENDING)
+                    .startAfter(cached.size() > 0 ? cached.get(0).dataObject : oldestLoaded)
+                    .limit(remaining)
+                    .get()
+                    .addOnCompleteListener(task -> {
+                        isLoadingOlder = false;
+                        List<ChatMessages> page = new ArrayList<>();
+                        if(task.isSuccessful() && task.getResult() != null) {
+                            page = toPage(task.getResult());
+                            hasMoreHistory = page.size() == remaining;
+                            localStore.saveMessages(channelId, page, null);
+                        }
+                        page.addAll(withReadableDateTime(cached));
+                        showOlderMessages(page);
+                    });
+        });
+    }
+
+    private void showOlderMessages(List<ChatMessages> page) {
+        if(page.size() > 0) {
+            oldestLoaded = page.get(0).dataObject;
+            chatMessages.prepend(page);
+            chatAdapter.submitList(chatMessages.snapshot(), null);
+        }
+    }
+
+    private List<ChatMessages> withReadableDateTime(List<ChatMessages> messages) {
+        for(ChatMessages chatMessage : messages) {
+            chatMessage.dateTime = getReadableDataTime(chatMessage.dataObject);
+            applySenderTranslation(chatMessage);
+        }
+        return messages;
+    }
+
+    // A translation made by the sender is only shown when it is in this user's language.
+    private void applySenderTranslation(ChatMessages chatMessage) {
+        if(chatMessage.translatedLanguage == null
+                || !chatMessage.translatedLanguage.equals(preferenceManager.getLanguage())
+                || chatMessage.senderId.equals(preferenceManager.getUserId())) {
+            chatMessage.translatedMessage = null;
+        }
+    }
+
+    private List<ChatMessages> toPage(QuerySnapshot querySnapshot) {
+        List<ChatMessages> page = new ArrayList<>();
+        for(DocumentSnapshot documentSnapshot : querySnapshot.getDocuments()) {
+            page.add(toChatMessage(documentSnapshot));
+        }
+        Collections.reverse(page);
+        return page;
+    }
+
+    private void evictOffscreenMessages() {
+        int excess = chatMessages.size() - Constants.MESSAGE_WINDOW_SIZE;
+        if(excess <= 0) {
+            return;
+        }
+        chatMessages.trimOldest(excess);
+        chatAdapter.submitList(chatMessages.snapshot(), null);
+        oldestLoaded = chatMessages.get(0).dataObject;
+        hasMoreHistory = true;
+    }
+
+    private final RecyclerView.OnScrollListener scrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            if(layoutManager == null || chatAdapter.getItemCount() == 0) {
+                return;
             }
-            if(isReceiverAvailable) {
-                binding.textAvailability.setVisibility(View.VISIBLE);
-            }else {
-                binding.textAvailability.setVisibility(View.GONE);
+            if(dy < 0 && layoutManager.findFirstVisibleItemPosition() <= Constants.MESSAGE_PREFETCH_DISTANCE) {
+                loadOlderMessages();
+            } else if(dy > 0 && layoutManager.findLastVisibleItemPosition()
+                    >= chatAdapter.getItemCount() - 1 - Constants.MESSAGE_PREFETCH_DISTANCE) {
+                evictOffscreenMessages();
             }
+            // Layout changes and jumps report a scroll while idle; a fling waits until it settles.
+            if(recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE) {
+                pretranslateVisibleMessages();
+            }
+        }
 
-        });
+        @Override
+        public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+            if(newState == RecyclerView.SCROLL_STATE_IDLE) {
+                pretranslateVisibleMessages();
+            }
+        }
+    };
+
+    /**
+     * In auto-translate mode, translates received messages in and around the viewport that have no
+     * translation yet. Results are stored on the message model so rebinding a row never translates
+     * again; the work itself runs on the translation cache's disk thread and ML Kit's executors.
+     */
+    private void pretranslateVisibleMessages() {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) binding.chatRecyclerView.getLayoutManager();
+        if(!autoTranslate || layoutManager == null) {
+            return;
+        }
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if(first == RecyclerView.NO_POSITION) {
+            return;
+        }
+        List<ChatMessages> current = chatAdapter.getCurrentList();
+        int from = Math.max(0, first - Constants.TRANSLATION_PREFETCH_MARGIN);
+        int to = Math.min(current.size() - 1, last + Constants.TRANSLATION_PREFETCH_MARGIN);
+        String userId = preferenceManager.getUserId();
+        String targetLanguage = preferenceManager.getLanguage();
+        TranslationCache translationCache = TranslationCache.getInstance(getApplicationContext());
+        for(int i = from; i <= to; i++) {
+            ChatMessages chatMessage = current.get(i);
+            if(chatMessage.translatedMessage != null || chatMessage.senderId.equals(userId)
+                    || !chatAdapter.markTranslationChecked(chatMessage.id, targetLanguage)) {
+                continue;
+            }
+            translationCache.translate(chatMessage.id, chatMessage.message, targetLanguage, translation -> {
+                if(translation != null && translation.equals(chatMessage.message)) {
+                    // Already in the reader's language; stays checked so it is not queued again.
+                    return;
+                }
+                // A snapshot may replace this message object later; the cache answers it again then.
+                chatAdapter.clearTranslationChecked(chatMessage.id, targetLanguage);
+                if(translation != null && chatMessage.translatedMessage == null) {
+                    chatMessage.translatedMessage = translation;
+                    chatAdapter.notifyTranslated(chatMessage);
+                }
+            });
+        }
     }
 
-    private void listenMessages() {
-        database.collection(Constants.KEY_COLLECTION_CHAT)
-                .whereEqualTo(Constants.KEY_SENDER_ID, preferenceManager.getString(Constants.KEY_USER_ID))
-                .whereEqualTo(Constants.KEY_RECEIVER_ID, receiverUser.id)
-                .addSnapshotListener(eventListener);
-        database.collection(Constants.KEY_COLLECTION_CHAT)
-                .whereEqualTo(Constants.KEY_SENDER_ID, receiverUser.id)
-                .whereEqualTo(Constants.KEY_RECEIVER_ID, preferenceManager.getString(Constants.KEY_USER_ID))
-                .addSnapshotListener(eventListener);
+    @Override
+    public void onTranslateOutgoingChanged(boolean enabled) {
+        translateOutgoing = enabled;
+        preferenceManager.putBoolean(Constants.KEY_TRANSLATE_OUTGOING, enabled);
+        chatAdapter.setTranslateOutgoing(enabled);
+    }
+
+    @Override
+    public void onAutoTranslateChanged(boolean enabled) {
+        autoTranslate = enabled;
+        preferenceManager.putBoolean(Constants.KEY_AUTO_TRANSLATE, enabled);
+        chatAdapter.setAutoTranslate(enabled);
+        if(enabled) {
+            pretranslateVisibleMessages();
+            return;
+        }
+        for(ChatMessages chatMessage : chatAdapter.getCurrentList()) {
+            if(chatMessage.translatedMessage != null) {
+                chatMessage.translatedMessage = null;
+                chatAdapter.notifyTranslated(chatMessage);
+            }
+        }
+    }
+
+    private ChatMessages toChatMessage(DocumentSnapshot documentSnapshot) {
+        ChatMessages chatMessage = new ChatMessages();
+        chatMessage.id = documentSnapshot.getId();
+        chatMessage.senderId = documentSnapshot.getString(Constants.KEY_SENDER_ID);
+        chatMessage.receiverId = documentSnapshot.getString(Constants.KEY_RECEIVER_ID);
+        chatMessage.message = documentSnapshot.getString(Constants.KEY_MESSAGE);
+        chatMessage.translatedMessage = documentSnapshot.getString(Constants.KEY_TRANSLATED_MESSAGE);
+        chatMessage.translatedLanguage = documentSnapshot.getString(Constants.KEY_TRANSLATED_LANGUAGE);
+        applySenderTranslation(chatMessage);
+        chatMessage.dateTime = getReadableDataTime(documentSnapshot.getDate(Constants.KEY_TIMESTAMP));
+        chatMessage.dataObject = documentSnapshot.getDate(Constants.KEY_TIMESTAMP);
+        chatMessage.pending = documentSnapshot.getMetadata().hasPendingWrites();
+        return chatMessage;
     }
 
     private final EventListener<QuerySnapshot> eventListener = (value, error) -> {
@@ -212,46 +569,81 @@ public class ChatActivity extends BaseActivity {
 
         }
         if(value != null) {
-            int count = chatMessages.size();
+            boolean appended = false;
+            List<ChatMessages> changed = new ArrayList<>();
+            boolean received = false;
             for(DocumentChange documentChange : value.getDocumentChanges()) {
-                if(documentChange.getType() == DocumentChange.Type.ADDED) {
-                    ChatMessages chatMessage = new ChatMessages();
-                    chatMessage.senderId = documentChange.getDocument().getString(Constants.KEY_SENDER_ID);
-                    chatMessage.receiverId = documentChange.getDocument().getString(Constants.KEY_RECEIVER_ID);
-                    chatMessage.message = documentChange.getDocument().getString(Constants.KEY_MESSAGE);
-                    chatMessage.dateTime = getReadableDataTime(documentChange.getDocument().getDate(Constants.KEY_TIMESTAMP));
-                    chatMessage.dataObject = documentChange.getDocument().getDate(Constants.KEY_TIMESTAMP);
-                    chatMessages.add(chatMessage);
+                if(documentChange.getType() == DocumentChange.Type.REMOVED) {
+                    chatMessages.remove(documentChange.getDocument().getId());
+                    localStore.deleteMessage(documentChange.getDocument().getId());
+                } else {
+                    ChatMessages chatMessage = toChatMessage(documentChange.getDocument());
+                    chatMessages.upsert(chatMessage);
+                    appended |= chatMessages.get(chatMessages.size() - 1) == chatMessage;
+                    changed.add(chatMessage);
+                    received |= documentChange.getType() == DocumentChange.Type.ADDED
+                            && chatMessage.senderId.equals(receiverUser.id);
                 }
-
             }
-            Collections.sort(chatMessages, (obj1, obj2) -> obj1.dataObject.compareTo(obj2.dataObject));
-            if(count == 0) {
-                chatAdapter.notifyDataSetChanged();
-            }else {
-                chatAdapter.notifyItemRangeInserted(chatMessages.size(), chatMessages.size());
-                binding.chatRecyclerView.smoothScrollToPosition(chatMessages.size() -1);
+            if(changed.size() > 0) {
+                localStore.saveMessages(channelId, changed, confirmedWatermark(value));
+            }
+            if(received) {
+                markRead();
+            }
+            if(appended) {
+                chatAdapter.submitList(chatMessages.snapshot(), () ->
+                        binding.chatRecyclerView.smoothScrollToPosition(chatAdapter.getItemCount() - 1));
+            } else {
+                chatAdapter.submitList(chatMessages.snapshot(), null);
             }
             binding.chatRecyclerView.setVisibility(View.VISIBLE);
         }
         binding.progressBar.setVisibility(View.GONE);
-        if(conversionId == null) {
+        // The other participant may have just created the summary with their first message.
+        if(conversionId == null && pendingConversionChecks == 0 && chatMessages.size() != 0) {
             checkForConversion();
         }
     };
 
-    private Bitmap getBitmapFromEncodedString(String encodedImage) {
-        if(encodedImage != null) {
-            byte[] bytes = Base64.decode(encodedImage, Base64.DEFAULT);
-            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-        }else {
+    /**
+     * Newest message the server has confirmed, or {@code null} for snapshots served from the cache,
+     * which may be missing messages older than the ones they contain.
+     */
+    private Date confirmedWatermark(QuerySnapshot value) {
+        if(value.getMetadata().isFromCache()) {
             return null;
         }
+        List<DocumentSnapshot> documents = value.getDocuments();
+        for(int i = documents.size() - 1; i >= 0; i--) {
+            if(!documents.get(i).getMetadata().hasPendingWrites()) {
+                return documents.get(i).getDate(Constants.KEY_TIMESTAMP);
+            }
+        }
+        return null;
+    }
 
+    private void loadReceiverImage() {
+        ImageLoader.getInstance(getApplicationContext()).load(
+                receiverUser.id,
+                receiverUser.imageHash,
+                receiverUser.image,
+                getResources().getDimensionPixelSize(com.intuit.sdp.R.dimen._25sdp),
+                bitmap -> {
+                    chatAdapter.setReceiverProfileImage(bitmap);
+                    chatAdapter.notifyItemRangeChanged(0, chatAdapter.getItemCount());
+                }
+        );
     }
 
     private void loadReceiverDetails() {
-        receiverUser = (User) getIntent().getSerializableExtra(Constants.KEY_USER);
+        User reference = getIntent().getParcelableExtra(Constants.KEY_USER);
+        receiverUser = UserCache.getInstance().resolve(reference);
+        if(receiverUser == null) {
+            // The process was restarted since the intent was created. Sending waits for
+            // loadReceiverProfile() so the summary and push get the receiver's name, image and token.
+            receiverUser = reference;
+        }
         binding.textName.setText(receiverUser.name);
         defaultLang = receiverUser.lang;
     }
@@ -266,33 +658,19 @@ public class ChatActivity extends BaseActivity {
         return new SimpleDateFormat("MMMM dd, yyyy - hh:mm a", Locale.getDefault()).format(date);
     }
 
-    private void addConversion(HashMap<String, Object> conversion) {
-        database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
-                .add(conversion)
-                .addOnSuccessListener(documentReference -> conversionId = documentReference.getId());
-    }
-
-    private void updateConversion(String message) {
-        DocumentReference documentReference =
-                database.collection(Constants.KEY_COLLECTION_CONVERSATIONS).document(conversionId);
-        documentReference.update(
-                Constants.KEY_LAST_MESSAGE, message,
-                Constants.KEY_TIMESTAMP, new Date()
-        );
-    }
-
+    // Summaries created before channels existed have random ids, so they are looked up by their
+    // participants even when no messages are loaded yet.
     private void checkForConversion() {
-        if(chatMessages.size() != 0) {
-            checkForConversionRemotely(
-                    preferenceManager.getString(Constants.KEY_USER_ID),
-                    receiverUser.id
-            );
-            checkForConversionRemotely(
-                    receiverUser.id,
-                    preferenceManager.getString(Constants.KEY_USER_ID)
-            );
-
-        }
+        pendingConversionChecks = 2;
+        updateSendEnabled();
+        checkForConversionRemotely(
+                preferenceManager.getUserId(),
+                receiverUser.id
+        );
+        checkForConversionRemotely(
+                receiverUser.id,
+                preferenceManager.getUserId()
+        );
     }
 
     private void checkForConversionRemotely(String senderId, String receiverId) {
@@ -304,15 +682,42 @@ public class ChatActivity extends BaseActivity {
     }
 
     private final OnCompleteListener<QuerySnapshot> conversionOnCompleteListener = task -> {
+        pendingConversionChecks--;
         if(task.isSuccessful() && task.getResult() != null && task.getResult().getDocuments().size() > 0) {
             DocumentSnapshot documentSnapshot = task.getResult().getDocuments().get(0);
             conversionId = documentSnapshot.getId();
+            markRead();
+        }
+        if(pendingConversionChecks == 0 && !conversionChecked) {
+            conversionChecked = true;
+            updateSendEnabled();
         }
     };
 
+    private void markRead() {
+        if(conversionId == null || !getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.RESUMED)) {
+            return;
+        }
+        String userId = preferenceManager.getUserId();
+        database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
+                .document(conversionId)
+                .update(
+                        FieldPath.of(Constants.KEY_UNREAD, userId), FieldValue.delete(),
+                        FieldPath.of(Constants.KEY_LAST_READ, userId), new Date(),
+                        FieldPath.of(Constants.KEY_UPDATED_AT), FieldValue.serverTimestamp()
+                );
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacksAndMessages(null);
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
-        listenAvailabilityOfReceiver();
+        ChatNotifications.cancel(getApplicationContext(), receiverUser.id);
+        markRead();
     }
 }
\ No newline at end of file
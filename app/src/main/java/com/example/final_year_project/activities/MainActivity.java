@@ -1,66 +1,94 @@
 package com.example.final_year_project.activities;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
-import android.util.Base64;
 import android.view.View;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.final_year_project.adapters.RecentConversationAdapter;
+import com.example.final_year_project.database.LocalStore;
 import com.example.final_year_project.databinding.ActivityMainBinding;
+import com.example.final_year_project.firebase.LegacyMigration;
+import com.example.final_year_project.firebase.Outbox;
 import com.example.final_year_project.firebase.PreferenceManager;
+import com.example.final_year_project.firebase.Presence;
+import com.example.final_year_project.firebase.SubscriptionHub;
+import com.example.final_year_project.firebase.UserDirectory;
 import com.example.final_year_project.listeners.ConversionListener;
 import com.example.final_year_project.models.ChatMessages;
 import com.example.final_year_project.models.User;
+import com.example.final_year_project.translation.ModelProvisioningWorker;
 import com.example.final_year_project.utilities.Constants;
-import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.Task;
+import com.example.final_year_project.utilities.ConversationList;
+import com.example.final_year_project.utilities.ImageLoader;
+import com.example.final_year_project.utilities.StartupMetrics;
+import com.example.final_year_project.utilities.UserCache;
 import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.messaging.FirebaseMessaging;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 
-public class MainActivity extends BaseActivity implements ConversionListener {
+public class MainActivity extends AppCompatActivity implements ConversionListener {
 
     private ActivityMainBinding binding;
     private PreferenceManager preferenceManager;
-    private List<ChatMessages> conversation;
+    private ConversationList conversation;
     private RecentConversationAdapter conversationAdapter;
     private FirebaseFirestore database;
+    private LocalStore localStore;
+    private boolean hasMoreConversations = true;
+    private boolean isLoadingOlder = false;
 
     private String defaultLang;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        preferenceManager = new PreferenceManager(getApplicationContext());
+        if(!preferenceManager.isSignedIn()) {
+            startActivity(new Intent(getApplicationContext(), SignInActivity.class));
+            finish();
+            return;
+        }
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
-        preferenceManager = new PreferenceManager(getApplicationContext());
+        defaultLang = preferenceManager.getLanguage();
         init();
         loadUserDetails();
-        getToken();
         setListeners();
         listenConversations();
+        StartupMetrics.onFirstFrame(binding.getRoot(), () -> {
+            Outbox.getInstance(getApplicationContext()).flush();
+            getToken();
+            syncProfile();
+            migrateLegacyData();
+        });
     }
 
     private void init() {
-        conversation = new ArrayList<>();
+        conversation = new ConversationList();
         conversationAdapter = new RecentConversationAdapter(conversation, this);
         binding.conversationsRecyclerView.setAdapter(conversationAdapter);
+        binding.conversationsRecyclerView.addOnScrollListener(scrollListener);
         database = FirebaseFirestore.getInstance();
+        localStore = LocalStore.getInstance(getApplicationContext());
     }
 
     private void setListeners() {
@@ -70,10 +98,15 @@ public class MainActivity extends BaseActivity implements ConversionListener {
     }
 
     private void loadUserDetails() {
-        binding.textName.setText(preferenceManager.getString(Constants.KEY_NAME));
-        byte[] bytes = Base64.decode(preferenceManager.getString(Constants.KEY_IMAGE), Base64.DEFAULT);
-        Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-        binding.imageProfile.setImageBitmap(bitmap);
+        binding.textName.setText(preferenceManager.getName());
+        // The inline image of older accounts is a large file; don't read it on the main thread.
+        preferenceManager.loadString(Constants.KEY_IMAGE, image ->
+                ImageLoader.getInstance(getApplicationContext()).load(
+                        binding.imageProfile,
+                        preferenceManager.getUserId(),
+                        preferenceManager.getString(Constants.KEY_IMAGE_HASH),
+                        image
+                ));
     }
 
     private void showToast(String message) {
@@ -81,56 +114,157 @@ public class MainActivity extends BaseActivity implements ConversionListener {
     }
 
     private  void listenConversations() {
-        database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
-                .whereEqualTo(Constants.KEY_SENDER_ID, preferenceManager.getString(Constants.KEY_USER_ID))
-                .addSnapshotListener(eventListener);
-        database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
-                .whereEqualTo(Constants.KEY_RECEIVER_ID, preferenceManager.getString(Constants.KEY_USER_ID))
-                .addSnapshotListener(eventListener);
+        localStore.loadConversations(cached -> {
+            if(cached.size() > 0) {
+                for(ChatMessages chatMessages : cached) {
+                    conversation.upsert(chatMessages);
+                }
+                conversationAdapter.notifyDataSetChanged();
+                binding.conversationsRecyclerView.setVisibility(View.VISIBLE);
+                binding.progressBar.setVisibility(View.GONE);
+                StartupMetrics.markContentShown(this);
+            }
+            localStore.loadWatermark(LocalStore.WATERMARK_CONVERSATIONS, watermark -> {
+                Query query;
+                if(watermark != null) {
+                    // updatedAt is a server timestamp moved by new messages and by reads alike.
+                    query = participantQuery()
+                            .whereGreaterThan(Constants.KEY_UPDATED_AT, watermark)
+                            .orderBy(Constants.KEY_UPDATED_AT);
+                } else {
+                    query = conversationsQuery().limit(Constants.CONVERSATION_PAGE_SIZE);
+                }
+                SubscriptionHub.getInstance().subscribe(this,
+                        Constants.KEY_COLLECTION_CONVERSATIONS + "/" + preferenceManager.getUserId(),
+                        query, MetadataChanges.EXCLUDE, eventListener);
+            });
+        });
     }
 
+    private Query participantQuery() {
+        return database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
+                .whereArrayContains(Constants.KEY_PARTICIPANTS, preferenceManager.getUserId());
+    }
+
+    private Query conversationsQuery() {
+        return participantQuery().orderBy(Constants.KEY_TIMESTAMP, Query.Direction.DESCENDING);
+    }
+
+    private void loadOlderConversations() {
+        if(isLoadingOlder || !hasMoreConversations || conversation.size() == 0) {
+            return;
+        }
+        isLoadingOlder = true;
+        conversationsQuery()
+                .startAfter(conversation.get(conversation.size() - 1).dataObject)
+                .limit(Constants.CONVERSATION_PAGE_SIZE)
+                .get()
+                .addOnCompleteListener(task -> {
+                    isLoadingOlder = false;
+                    if(!task.isSuccessful() || task.getResult() == null) {
+                        return;
+                    }
+                    List<ChatMessages> page = new ArrayList<>();
+                    for(DocumentSnapshot documentSnapshot : task.getResult().getDocuments()) {
+                        ChatMessages chatMessages = toConversation(documentSnapshot);
+                        showConversation(chatMessages);
+                        page.add(chatMessages);
+                    }
+                    hasMoreConversations = page.size() == Constants.CONVERSATION_PAGE_SIZE;
+                    localStore.saveConversations(page, null);
+                });
+    }
+
+    private final RecyclerView.OnScrollListener scrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            if(dy > 0 && layoutManager != null
+                    && layoutManager.findLastVisibleItemPosition() >= conversation.size() - 1 - Constants.MESSAGE_PREFETCH_DISTANCE) {
+                loadOlderConversations();
+            }
+        }
+    };
+
+    private ChatMessages toConversation(DocumentSnapshot documentSnapshot) {
+        String senderId = documentSnapshot.getString(Constants.KEY_SENDER_ID);
+        String receiverId = documentSnapshot.getString(Constants.KEY_RECEIVER_ID);
+        ChatMessages chatMessages = new ChatMessages();
+        chatMessages.id = documentSnapshot.getId();
+        chatMessages.senderId = senderId;
+        chatMessages.receiverId = receiverId;
+        if(preferenceManager.getUserId().equals(senderId)) {
+            chatMessages.conversionImage = documentSnapshot.getString(Constants.KEY_RECEIVER_IMAGE);
+            chatMessages.conversionImageHash = documentSnapshot.getString(Constants.KEY_RECEIVER_IMAGE_HASH);
+            chatMessages.conversionName = documentSnapshot.getString(Constants.KEY_RECEIVER_NAME);
+            chatMessages.conversionId = documentSnapshot.getString(Constants.KEY_RECEIVER_ID);
+        } else {
+            chatMessages.conversionImage = documentSnapshot.getString(Constants.KEY_SENDER_IMAGE);
+            chatMessages.conversionImageHash = documentSnapshot.getString(Constants.KEY_SENDER_IMAGE_HASH);
+            chatMessages.conversionName = documentSnapshot.getString(Constants.KEY_SENDER_NAME);
+            chatMessages.conversionId = documentSnapshot.getString(Constants.KEY_SENDER_ID);
+        }
+        chatMessages.message = documentSnapshot.getString(Constants.KEY_LAST_MESSAGE);
+        chatMessages.dataObject = documentSnapshot.getDate(Constants.KEY_TIMESTAMP);
+        chatMessages.unreadCount = countUnread(documentSnapshot, preferenceManager.getUserId());
+        return chatMessages;
+    }
+
+    // Summaries written before unread counts were kept as numbers hold a map here and count as read.
+    private int countUnread(DocumentSnapshot documentSnapshot, String userId) {
+        Object unread = documentSnapshot.get(FieldPath.of(Constants.KEY_UNREAD, userId));
+        return unread instanceof Number ? ((Number) unread).intValue() : 0;
+    }
+
+    private ConversationList.Move showConversation(ChatMessages chatMessages) {
+        ConversationList.Move move = conversation.upsert(chatMessages);
+        if(move.from == -1) {
+            conversationAdapter.notifyItemInserted(move.to);
+        } else if(move.from != move.to) {
+            conversationAdapter.notifyItemMoved(move.from, move.to);
+            conversationAdapter.notifyItemChanged(move.to);
+        } else {
+            conversationAdapter.notifyItemChanged(move.to);
+        }
+        return move;
+    }
 
     private final EventListener<QuerySnapshot> eventListener = (value, error) -> {
         if(error != null) {
             return;
         }
         if(value != null) {
+            List<ChatMessages> changed = new ArrayList<>();
+            Date watermark = null;
+            boolean movedToTop = false;
             for(DocumentChange documentChange : value.getDocumentChanges()) {
-                if(documentChange.getType() == DocumentChange.Type.ADDED) {
-                    String senderId = documentChange.getDocument().getString(Constants.KEY_SENDER_ID);
-                    String receiverId = documentChange.getDocument().getString(Constants.KEY_RECEIVER_ID);
-                    ChatMessages chatMessages = new ChatMessages();
-                    chatMessages.senderId = senderId;
-                    chatMessages.receiverId = receiverId;
-                    if(preferenceManager.getString(Constants.KEY_USER_ID).equals(senderId)) {
-                        chatMessages.conversionImage = documentChange.getDocument().getString(Constants.KEY_RECEIVER_IMAGE);
-                        chatMessages.conversionName = documentChange.getDocument().getString(Constants.KEY_RECEIVER_NAME);
-                        chatMessages.conversionId = documentChange.getDocument().getString(Constants.KEY_RECEIVER_ID);
-                    } else {
-                        chatMessages.conversionImage = documentChange.getDocument().getString(Constants.KEY_SENDER_IMAGE);
-                        chatMessages.conversionName = documentChange.getDocument().getString(Constants.KEY_SENDER_NAME);
-                        chatMessages.conversionId = documentChange.getDocument().getString(Constants.KEY_SENDER_ID);
-                    }
-                    chatMessages.message = documentChange.getDocument().getString(Constants.KEY_LAST_MESSAGE);
-                    chatMessages.dataObject = documentChange.getDocument().getDate(Constants.KEY_TIMESTAMP);
-                    conversation.add(chatMessages);
-                }else if(documentChange.getType() == DocumentChange.Type.MODIFIED) {
-                    for(int i = 0; i < conversation.size(); i++) {
-                        String senderId = documentChange.getDocument().getString(Constants.KEY_SENDER_ID);
-                        String receiverId = documentChange.getDocument().getString(Constants.KEY_RECEIVER_ID);
-                        if(conversation.get(i).senderId.equals(senderId) && conversation.get(i).receiverId.equals(receiverId)) {
-                            conversation.get(i).message = documentChange.getDocument().getString(Constants.KEY_LAST_MESSAGE);
-                            conversation.get(i).dataObject = documentChange.getDocument().getDate(Constants.KEY_TIMESTAMP);
-                            break;
-                        }
-                    }
+                // REMOVED only means the conversation fell out of the limited top window; keep its row.
+                if(documentChange.getType() == DocumentChange.Type.REMOVED) {
+                    continue;
+                }
+                ChatMessages chatMessages = toConversation(documentChange.getDocument());
+                ConversationList.Move move = showConversation(chatMessages);
+                movedToTop |= move.to == 0;
+                changed.add(chatMessages);
+                // Cached snapshots may be missing conversations updated while this device was away.
+                Date updatedAt = documentChange.getDocument().getDate(Constants.KEY_UPDATED_AT);
+                if(!value.getMetadata().isFromCache()
+                        && !documentChange.getDocument().getMetadata().hasPendingWrites()
+                        && updatedAt != null
+                        && (watermark == null || updatedAt.after(watermark))) {
+                    watermark = updatedAt;
                 }
             }
-            Collections.sort(conversation, (obj1, obj2) -> obj2.dataObject.compareTo(obj1.dataObject));
-            conversationAdapter.notifyDataSetChanged();
-            binding.conversationsRecyclerView.smoothScrollToPosition(0);
+            if(changed.size() > 0) {
+                localStore.saveConversations(changed, watermark);
+            }
+            LinearLayoutManager layoutManager = (LinearLayoutManager) binding.conversationsRecyclerView.getLayoutManager();
+            if(movedToTop && layoutManager != null && layoutManager.findFirstVisibleItemPosition() <= 0) {
+                binding.conversationsRecyclerView.scrollToPosition(0);
+            }
             binding.conversationsRecyclerView.setVisibility(View.VISIBLE);
             binding.progressBar.setVisibility(View.GONE);
+            StartupMetrics.markContentShown(this);
         }
 
     };
@@ -140,43 +274,67 @@ public class MainActivity extends BaseActivity implements ConversionListener {
     }
 
     private void updateToken(String token) {
+        if(token.equals(preferenceManager.getString(Constants.KEY_FCM_TOKEN))) {
+            return;
+        }
         preferenceManager.putString(Constants.KEY_FCM_TOKEN, token);
-        FirebaseFirestore database = FirebaseFirestore.getInstance();
-        DocumentReference documentReference =
-                database.collection(Constants.KEY_COLLECTION_USERS).document(
-                        preferenceManager.getString(Constants.KEY_USER_ID)
-                );
-        documentReference.update(Constants.KEY_FCM_TOKEN, token)
+        Presence.getInstance(getApplicationContext()).refresh();
+        database.collection(Constants.KEY_COLLECTION_USERS)
+                .document(preferenceManager.getUserId())
+                .update(Constants.KEY_FCM_TOKEN, token)
                 .addOnFailureListener(e -> showToast("Unable to update token"));
-        documentReference.get().addOnCompleteListener(new OnCompleteListener<DocumentSnapshot>() {
-            @Override
-            public void onComplete(@NonNull Task<DocumentSnapshot> task) {
-                if (task.isSuccessful()) {
-                    DocumentSnapshot document = task.getResult();
-                    if (document.exists()) {
-                        defaultLang = (String) document.getData().get(Constants.KEY_LANGUAGE);
-                    } else {
-//                        Log.d(TAG, "No such document");
+    }
+
+    // Accounts signed in before the user directory existed are only added to it from here.
+    private void syncProfile() {
+        database.collection(Constants.KEY_COLLECTION_USERS)
+                .document(preferenceManager.getUserId())
+                .get()
+                .addOnSuccessListener(documentSnapshot -> {
+                    String language = documentSnapshot.getString(Constants.KEY_LANGUAGE);
+                    boolean languageChanged = language != null && !language.equals(defaultLang);
+                    if(languageChanged) {
+                        defaultLang = language;
+                        preferenceManager.putString(Constants.KEY_LANGUAGE, language);
+                        ModelProvisioningWorker.schedule(getApplicationContext(), language);
                     }
-                } else {
-//                    Log.d(TAG, "get failed with ", task.getException());
-                }
-            }
-        });
+                    if(languageChanged || !preferenceManager.getBoolean(Constants.KEY_DIRECTORY_PUBLISHED)) {
+                        UserDirectory.publish(
+                                documentSnapshot.getId(),
+                                documentSnapshot.getString(Constants.KEY_NAME),
+                                documentSnapshot.getString(Constants.KEY_EMAIL),
+                                documentSnapshot.getString(Constants.KEY_IMAGE_HASH),
+                                language
+                        ).addOnSuccessListener(unused -> preferenceManager.putBoolean(Constants.KEY_DIRECTORY_PUBLISHED, true));
+                    }
+                });
+    }
+
+    // Conversations started before channels existed have no participants array and so do not show up
+    // in the list until their history has been copied over.
+    private void migrateLegacyData() {
+        if(preferenceManager.getBoolean(Constants.KEY_LEGACY_MIGRATED)) {
+            return;
+        }
+        LegacyMigration.migrate(preferenceManager.getUserId())
+                .addOnSuccessListener(unused -> preferenceManager.putBoolean(Constants.KEY_LEGACY_MIGRATED, true));
     }
 
     private void signOut() {
         showToast("Signin out...");
+        Presence.getInstance(getApplicationContext()).signOut();
         FirebaseFirestore database = FirebaseFirestore.getInstance();
         DocumentReference documentReference =
                 database.collection(Constants.KEY_COLLECTION_USERS).document(
-                        preferenceManager.getString(Constants.KEY_USER_ID)
+                        preferenceManager.getUserId()
                 );
         HashMap<String, Object> updates = new HashMap<>();
         updates.put(Constants.KEY_FCM_TOKEN, FieldValue.delete());
         documentReference.update(updates)
                 .addOnSuccessListener(unused -> {
+                    SubscriptionHub.getInstance().clear();
                     preferenceManager.clear();
+                    localStore.clear();
                     startActivity(new Intent(getApplicationContext(), SignInActivity.class));
                     finish();
                 })
@@ -187,7 +345,7 @@ public class MainActivity extends BaseActivity implements ConversionListener {
     public void onConversionClicked(User user) {
         Intent intent = new Intent(getApplicationContext(), ChatActivity.class);
         user.lang = defaultLang;
-        intent.putExtra(Constants.KEY_USER, user);
+        intent.putExtra(Constants.KEY_USER, UserCache.getInstance().put(user));
         startActivity(intent);
     }
 }
\ No newline at end of file
@@ -10,6 +10,9 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.final_year_project.databinding.ActivitySigninBinding;
 import com.example.final_year_project.firebase.PreferenceManager;
+import com.example.final_year_project.firebase.Presence;
+import com.example.final_year_project.firebase.UserDirectory;
+import com.example.final_year_project.translation.ModelProvisioningWorker;
 import com.example.final_year_project.utilities.Constants;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
@@ -23,11 +26,6 @@ public class SignInActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         preferenceManager = new PreferenceManager(getApplicationContext());
-        if(preferenceManager.getBoolean(Constants.KEY_IS_SIGNED_IN)) {
-            Intent intent = new Intent(getApplicationContext(), MainActivity.class);
-            startActivity(intent);
-            finish();
-        }
         binding = ActivitySigninBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
         setListeners();
@@ -58,7 +56,17 @@ public class SignInActivity extends AppCompatActivity {
                         preferenceManager.putString(Constants.KEY_USER_ID, documentSnapshot.getId());
                         preferenceManager.putString(Constants.KEY_NAME, documentSnapshot.getString(Constants.KEY_NAME));
                         preferenceManager.putString(Constants.KEY_IMAGE, documentSnapshot.getString(Constants.KEY_IMAGE));
+                        preferenceManager.putString(Constants.KEY_IMAGE_HASH, documentSnapshot.getString(Constants.KEY_IMAGE_HASH));
                         preferenceManager.putString(Constants.KEY_LANGUAGE, documentSnapshot.getString(Constants.KEY_LANGUAGE));
+                        ModelProvisioningWorker.schedule(getApplicationContext(), documentSnapshot.getString(Constants.KEY_LANGUAGE));
+                        UserDirectory.publish(
+                                documentSnapshot.getId(),
+                                documentSnapshot.getString(Constants.KEY_NAME),
+                                documentSnapshot.getString(Constants.KEY_EMAIL),
+                                documentSnapshot.getString(Constants.KEY_IMAGE_HASH),
+                                documentSnapshot.getString(Constants.KEY_LANGUAGE)
+                        ).addOnSuccessListener(unused -> preferenceManager.putBoolean(Constants.KEY_DIRECTORY_PUBLISHED, true));
+                        Presence.getInstance(getApplicationContext()).refresh();
                         Intent intent = new Intent(getApplicationContext(), MainActivity.class);
                         intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
                         startActivity(intent);
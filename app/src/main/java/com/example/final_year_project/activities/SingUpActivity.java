@@ -6,11 +6,9 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
-import android.util.Base64;
 import android.util.Patterns;
 import android.view.View;
 import android.widget.AdapterView;
@@ -21,19 +19,21 @@ import android.widget.Toast;
 import com.example.final_year_project.R;
 import com.example.final_year_project.databinding.ActivitySingUpBinding;
 import com.example.final_year_project.firebase.PreferenceManager;
+import com.example.final_year_project.firebase.Presence;
+import com.example.final_year_project.firebase.UserDirectory;
+import com.example.final_year_project.storage.AvatarStore;
+import com.example.final_year_project.storage.ImageIngestor;
+import com.example.final_year_project.translation.ModelProvisioningWorker;
 import com.example.final_year_project.utilities.Constants;
 import com.google.firebase.firestore.FirebaseFirestore;
 
-import java.io.ByteArrayOutputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
 import java.util.HashMap;
 
 public class SingUpActivity extends AppCompatActivity implements AdapterView.OnItemSelectedListener {
 
     private ActivitySingUpBinding binding;
     private PreferenceManager preferenceManager;
-    private String encodedImage;
+    private Bitmap profileImage;
 
     private String defaultLang = "English";
 
@@ -77,12 +77,21 @@ public class SingUpActivity extends AppCompatActivity implements AdapterView.OnI
 
     private void signUp() {
         loading(true);
+        AvatarStore.getInstance().upload(profileImage)
+                .addOnSuccessListener(this::createUser)
+                .addOnFailureListener(exception -> {
+                    loading(false);
+                    showToast(exception.getMessage());
+                });
+    }
+
+    private void createUser(String imageHash) {
         FirebaseFirestore database = FirebaseFirestore.getInstance();
         HashMap<String, Object> user = new HashMap<>();
         user.put(Constants.KEY_NAME, binding.inputName.getText().toString());
         user.put(Constants.KEY_EMAIL, binding.inputEmail.getText().toString());
         user.put(Constants.KEY_PASSWORD, binding.inputPassword.getText().toString());
-        user.put(Constants.KEY_IMAGE, encodedImage);
+        user.put(Constants.KEY_IMAGE_HASH, imageHash);
         user.put(Constants.KEY_LANGUAGE, defaultLang);
         database.collection(Constants.KEY_COLLECTION_USERS)
                 .add(user)
@@ -91,8 +100,17 @@ public class SingUpActivity extends AppCompatActivity implements AdapterView.OnI
                     preferenceManager.putBoolean(Constants.KEY_IS_SIGNED_IN, true);
                     preferenceManager.putString(Constants.KEY_USER_ID, documentReference.getId());
                     preferenceManager.putString(Constants.KEY_NAME, binding.inputName.getText().toString());
-                    preferenceManager.putString(Constants.KEY_IMAGE, encodedImage);
+                    preferenceManager.putString(Constants.KEY_IMAGE_HASH, imageHash);
                     preferenceManager.putString(Constants.KEY_LANGUAGE, defaultLang);
+                    ModelProvisioningWorker.schedule(getApplicationContext(), defaultLang);
+                    UserDirectory.publish(
+                            documentReference.getId(),
+                            binding.inputName.getText().toString(),
+                            binding.inputEmail.getText().toString(),
+                            imageHash,
+                            defaultLang
+                    ).addOnSuccessListener(unused -> preferenceManager.putBoolean(Constants.KEY_DIRECTORY_PUBLISHED, true));
+                    Presence.getInstance(getApplicationContext()).refresh();
                     Intent intent = new Intent(getApplicationContext(), MainActivity.class);
                     intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
                     startActivity(intent);
@@ -105,39 +123,26 @@ public class SingUpActivity extends AppCompatActivity implements AdapterView.OnI
                 });
     }
 
-    private String encodeImage(Bitmap bitmap) {
-        int previewWidth = 150;
-        int previewHeight = bitmap.getHeight() * previewWidth / bitmap.getWidth();
-        Bitmap previewBitmap = Bitmap.createScaledBitmap(bitmap, previewWidth, previewHeight, false);
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        previewBitmap.compress(Bitmap.CompressFormat.JPEG, 50, byteArrayOutputStream);
-        byte[] bytes = byteArrayOutputStream.toByteArray();
-        return Base64.encodeToString(bytes, Base64.DEFAULT);
-    }
-
     private final ActivityResultLauncher<Intent> pickImage = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
                 if(result.getResultCode() == RESULT_OK) {
                     if(result.getData() !=  null) {
                         Uri imageUri = result.getData().getData();
-                        try{
-                            InputStream inputStream = getContentResolver().openInputStream(imageUri);
-                            Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-                            binding.imageProfile.setImageBitmap(bitmap);
-                            binding.textAddImage.setVisibility(View.GONE);
-                            encodedImage = encodeImage(bitmap);
-
-                        } catch (FileNotFoundException e) {
-                            e.printStackTrace();
-                        }
+                        ImageIngestor.ingest(getContentResolver(), imageUri)
+                                .addOnSuccessListener(this, bitmap -> {
+                                    binding.imageProfile.setImageBitmap(bitmap);
+                                    binding.textAddImage.setVisibility(View.GONE);
+                                    profileImage = bitmap;
+                                })
+                                .addOnFailureListener(this, e -> showToast("Unable to load image"));
                     }
                 }
             }
     );
 
     private Boolean isValidSignUpDetails() {
-        if(encodedImage == null) {
+        if(profileImage == null) {
             showToast("Select profile image");
             return false;
         }else if(binding.inputName.getText().toString().trim().isEmpty()) {
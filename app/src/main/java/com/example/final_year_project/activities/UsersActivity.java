@@ -2,24 +2,43 @@ package com.example.final_year_project.activities;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
 import com.example.final_year_project.adapters.UsersAdapter;
 import com.example.final_year_project.databinding.ActivityUsersBinding;
 import com.example.final_year_project.firebase.PreferenceManager;
+import com.example.final_year_project.firebase.UserDirectory;
 import com.example.final_year_project.listeners.UserListener;
 import com.example.final_year_project.models.User;
 import com.example.final_year_project.utilities.Constants;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.example.final_year_project.utilities.UserCache;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class UsersActivity extends BaseActivity implements UserListener {
+public class UsersActivity extends AppCompatActivity implements UserListener {
 
     private ActivityUsersBinding binding;
     private PreferenceManager preferenceManager;
+    private final List<User> users = new ArrayList<>();
+    private UsersAdapter usersAdapter;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private String searchText = "";
+    private DocumentSnapshot lastVisible = null;
+    private boolean hasMoreUsers = true;
+    private boolean isLoading = false;
+    private int searchGeneration = 0;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -27,48 +46,108 @@ public class UsersActivity extends BaseActivity implements UserListener {
         binding = ActivityUsersBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
         preferenceManager = new PreferenceManager(getApplicationContext());
+        usersAdapter = new UsersAdapter(users, this);
+        binding.usersRecyclerView.setAdapter(usersAdapter);
         setListeners();
         getUsers();
     }
 
     private void setListeners() {
         binding.imageBack.setOnClickListener(v -> onBackPressed());
+        binding.inputSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, Constants.SEARCH_DEBOUNCE_MS);
+            }
+        });
+        binding.usersRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if(dy > 0 && layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= users.size() - 1 - Constants.MESSAGE_PREFETCH_DISTANCE) {
+                    getUsers();
+                }
+            }
+        });
     }
 
+    private final Runnable searchRunnable = () -> {
+        String text = binding.inputSearch.getText().toString().trim();
+        if(text.equals(searchText)) {
+            return;
+        }
+        searchText = text;
+        searchGeneration++;
+        lastVisible = null;
+        hasMoreUsers = true;
+        isLoading = false;
+        int count = users.size();
+        users.clear();
+        usersAdapter.notifyItemRangeRemoved(0, count);
+        binding.textErrorMessage.setVisibility(View.GONE);
+        getUsers();
+    };
+
     private void getUsers() {
+        if(isLoading || !hasMoreUsers) {
+            return;
+        }
+        isLoading = true;
         loading(true);
-        FirebaseFirestore database = FirebaseFirestore.getInstance();
-        database.collection(Constants.KEY_COLLECTION_USERS)
-                .get()
-                .addOnCompleteListener(task -> {
-                    loading(false);
-                    String currentUserId = preferenceManager.getString(Constants.KEY_USER_ID);
-                    if(task.isSuccessful() && task.getResult() != null) {
-                        List<User> users = new ArrayList<>();
-                        for(QueryDocumentSnapshot queryDocumentSnapshot : task.getResult()) {
-                            if(currentUserId.equals(queryDocumentSnapshot.getId())) {
-                                continue;
-                            }
-                            User user = new User();
-                            user.name = queryDocumentSnapshot.getString(Constants.KEY_NAME);
-                            user.email = queryDocumentSnapshot.getString(Constants.KEY_EMAIL);
-                            user.image = queryDocumentSnapshot.getString(Constants.KEY_IMAGE);
-                            user.token = queryDocumentSnapshot.getString(Constants.KEY_FCM_TOKEN);
-                            user.lang = queryDocumentSnapshot.getString(Constants.KEY_LANGUAGE);
-                            user.id = queryDocumentSnapshot.getId();
-                            users.add(user);
-                        }
-                        if(users.size() > 0) {
-                            UsersAdapter usersAdapter = new UsersAdapter(users, this);
-                            binding.usersRecyclerView.setAdapter(usersAdapter);
-                            binding.usersRecyclerView.setVisibility(View.VISIBLE);
-                        } else {
-                            showErrorMessage();
-                        }
-                    } else {
-                        showErrorMessage();
+        int generation = searchGeneration;
+        Query query = UserDirectory.search(searchText);
+        if(lastVisible != null) {
+            query = query.startAfter(lastVisible);
+        }
+        query.get().addOnCompleteListener(task -> {
+            if(generation != searchGeneration) {
+                return;
+            }
+            isLoading = false;
+            loading(false);
+            String currentUserId = preferenceManager.getUserId();
+            if(task.isSuccessful() && task.getResult() != null) {
+                List<DocumentSnapshot> documents = task.getResult().getDocuments();
+                hasMoreUsers = documents.size() == Constants.USERS_PAGE_SIZE;
+                if(documents.size() > 0) {
+                    lastVisible = documents.get(documents.size() - 1);
+                }
+                int start = users.size();
+                for(DocumentSnapshot documentSnapshot : documents) {
+                    if(currentUserId.equals(documentSnapshot.getId())) {
+                        continue;
                     }
-                });
+                    User user = new User();
+                    user.name = documentSnapshot.getString(Constants.KEY_NAME);
+                    user.email = documentSnapshot.getString(Constants.KEY_EMAIL);
+                    user.imageHash = documentSnapshot.getString(Constants.KEY_IMAGE_HASH);
+                    user.lang = documentSnapshot.getString(Constants.KEY_LANGUAGE);
+                    user.id = documentSnapshot.getId();
+                    users.add(user);
+                }
+                usersAdapter.notifyItemRangeInserted(start, users.size() - start);
+                if(users.size() > 0) {
+                    binding.usersRecyclerView.setVisibility(View.VISIBLE);
+                    binding.textErrorMessage.setVisibility(View.GONE);
+                } else if(!hasMoreUsers) {
+                    showErrorMessage();
+                } else {
+                    getUsers();
+                }
+            } else if(users.size() == 0) {
+                showErrorMessage();
+            }
+        });
     }
 
     private void showErrorMessage() {
@@ -84,11 +163,17 @@ public class UsersActivity extends BaseActivity implements UserListener {
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        searchHandler.removeCallbacks(searchRunnable);
+    }
+
     @Override
     public void onUserClicked(User user) {
         Intent intent = new Intent(getApplicationContext(), ChatActivity.class);
-        intent.putExtra(Constants.KEY_USER, user);
+        intent.putExtra(Constants.KEY_USER, UserCache.getInstance().put(user));
         startActivity(intent);
         finish();
     }
-}
\ No newline at end of file
+}
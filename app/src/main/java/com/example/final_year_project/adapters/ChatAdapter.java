@@ -9,25 +9,33 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.widget.PopupMenu;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.final_year_project.R;
 import com.example.final_year_project.databinding.ItemContainerReceivedMessageBinding;
 import com.example.final_year_project.databinding.ItemContainerSentMessageBinding;
+import com.example.final_year_project.listeners.ChatListener;
 import com.example.final_year_project.models.ChatMessages;
-import com.google.firebase.ml.common.modeldownload.FirebaseModelDownloadConditions;
-import com.google.firebase.ml.naturallanguage.FirebaseNaturalLanguage;
-import com.google.firebase.ml.naturallanguage.translate.FirebaseTranslateLanguage;
-import com.google.firebase.ml.naturallanguage.translate.FirebaseTranslator;
-import com.google.firebase.ml.naturallanguage.translate.FirebaseTranslatorOptions;
+import com.example.final_year_project.translation.TranslationCache;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
-    private final List<ChatMessages> chatMessages;
+    private final AsyncListDiffer<ChatMessages> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private Bitmap receiverProfileImage;
     private final String senderId;
+    private final ChatListener chatListener;
+    private boolean autoTranslate;
+    private boolean translateOutgoing;
+    private final Map<String, Set<String>> translationChecked = new HashMap<>();
 
     private String defaultLang = "English";
 
@@ -38,11 +46,71 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         receiverProfileImage = bitmap;
     }
 
-    public ChatAdapter(List<ChatMessages> chatMessages, Bitmap receiverProfileImage, String senderId, String defaultLang) {
-        this.chatMessages = chatMessages;
+    private static final DiffUtil.ItemCallback<ChatMessages> DIFF_CALLBACK = new DiffUtil.ItemCallback<ChatMessages>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ChatMessages oldItem, @NonNull ChatMessages newItem) {
+            return oldItem.id.equals(newItem.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ChatMessages oldItem, @NonNull ChatMessages newItem) {
+            return Objects.equals(oldItem.message, newItem.message)
+                    && Objects.equals(oldItem.dateTime, newItem.dateTime)
+                    && Objects.equals(oldItem.translatedMessage, newItem.translatedMessage)
+                    && oldItem.pending == newItem.pending;
+        }
+    };
+
+    public ChatAdapter(Bitmap receiverProfileImage, String senderId, String defaultLang, ChatListener chatListener) {
         this.receiverProfileImage = receiverProfileImage;
         this.senderId = senderId;
         this.defaultLang = defaultLang;
+        this.chatListener = chatListener;
+    }
+
+    public void submitList(List<ChatMessages> chatMessages, Runnable commitCallback) {
+        differ.submitList(chatMessages, commitCallback);
+    }
+
+    public List<ChatMessages> getCurrentList() {
+        return differ.getCurrentList();
+    }
+
+    public void setAutoTranslate(boolean autoTranslate) {
+        this.autoTranslate = autoTranslate;
+    }
+
+    public void setTranslateOutgoing(boolean translateOutgoing) {
+        this.translateOutgoing = translateOutgoing;
+    }
+
+    /**
+     * Marks {@code messageId} as handled for {@code language}, either because a translation is on
+     * its way or because the message turned out to be in that language already. Returns false if
+     * it was marked before, so auto-translate does not queue the same message on every scroll.
+     */
+    public boolean markTranslationChecked(String messageId, String language) {
+        Set<String> checked = translationChecked.get(language);
+        if(checked == null) {
+            checked = new HashSet<>();
+            translationChecked.put(language, checked);
+        }
+        return checked.add(messageId);
+    }
+
+    public void clearTranslationChecked(String messageId, String language) {
+        Set<String> checked = translationChecked.get(language);
+        if(checked != null) {
+            checked.remove(messageId);
+        }
+    }
+
+    /** Rebinds {@code chatMessage} after its translation was filled in place. */
+    public void notifyTranslated(ChatMessages chatMessage) {
+        int position = differ.getCurrentList().indexOf(chatMessage);
+        if(position >= 0) {
+            notifyItemChanged(position);
+        }
     }
 
     @NonNull
@@ -62,7 +130,8 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
                             LayoutInflater.from(parent.getContext()),
                             parent,
                             false
-                    )
+                    ),
+                    this
             );
         }
     }
@@ -70,21 +139,21 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
         if(getItemViewType(position) == VIEW_TYPE_SENT) {
-            ((SendMessageViewHolder) holder).setData(chatMessages.get(position));
+            ((SendMessageViewHolder) holder).setData(differ.getCurrentList().get(position));
         }else {
-            ((ReceivedMessageViewHolder) holder).setData(chatMessages.get(position), receiverProfileImage, defaultLang);
+            ((ReceivedMessageViewHolder) holder).setData(differ.getCurrentList().get(position), receiverProfileImage, defaultLang);
         }
 
     }
 
     @Override
     public int getItemCount() {
-        return chatMessages.size();
+        return differ.getCurrentList().size();
     }
 
     @Override
     public int getItemViewType(int position) {
-        if(chatMessages.get(position).senderId.equals(senderId)) {
+        if(differ.getCurrentList().get(position).senderId.equals(senderId)) {
             return VIEW_TYPE_SENT;
         } else {
             return VIEW_TYPE_RECEIVED;
@@ -102,7 +171,11 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
         void setData(ChatMessages chatMessage) {
             binding.textMessage.setText(chatMessage.message);
-            binding.textDateTime.setText(chatMessage.dateTime);
+            if(chatMessage.pending) {
+                binding.textDateTime.setText(R.string.sending);
+            } else {
+                binding.textDateTime.setText(chatMessage.dateTime);
+            }
         }
 
 
@@ -110,18 +183,29 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
     static class ReceivedMessageViewHolder extends RecyclerView.ViewHolder {
 
+        private final ChatAdapter adapter;
+
         private final ItemContainerReceivedMessageBinding binding;
 
         private String defaultLang = "English";
+        private ChatMessages chatMessage;
 
-        ReceivedMessageViewHolder(ItemContainerReceivedMessageBinding itemContainerReceivedMessageBinding) {
+        ReceivedMessageViewHolder(ItemContainerReceivedMessageBinding itemContainerReceivedMessageBinding, ChatAdapter adapter) {
             super(itemContainerReceivedMessageBinding.getRoot());
             binding = itemContainerReceivedMessageBinding;
+            this.adapter = adapter;
         }
         void setData(ChatMessages chatMessages, Bitmap receiverProfileImage, String lang) {
-            binding.textMessage.setText(chatMessages.message);
-            binding.textDateTime.setText(chatMessages.dateTime);
+            chatMessage = chatMessages;
             defaultLang = lang;
+            if(chatMessages.translatedMessage != null) {
+                binding.textMessage.setText(chatMessages.translatedMessage);
+                binding.translated.setVisibility(View.VISIBLE);
+            } else {
+                binding.textMessage.setText(chatMessages.message);
+                binding.translated.setVisibility(View.GONE);
+            }
+            binding.textDateTime.setText(chatMessages.dateTime);
             if(receiverProfileImage != null) {
                 binding.imageProfile.setImageBitmap(receiverProfileImage);
             }
@@ -138,6 +222,8 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         private void popupMenu(TextView msg) {
             PopupMenu popupMenu = new PopupMenu(binding.getRoot().getContext(), msg);
             popupMenu.inflate(R.menu.message_long_press_menu);
+            popupMenu.getMenu().findItem(R.id.itemAutoTranslate).setChecked(adapter.autoTranslate);
+            popupMenu.getMenu().findItem(R.id.itemTranslateOutgoing).setChecked(adapter.translateOutgoing);
 
             popupMenu.show();
 
@@ -146,7 +232,13 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
                 public boolean onMenuItemClick(MenuItem item) {
                     switch (item.getItemId()) {
                         case R.id.itemTranslate:
-                            translate((String) binding.textMessage.getText());
+                            translate();
+                            return true;
+                        case R.id.itemAutoTranslate:
+                            adapter.chatListener.onAutoTranslateChanged(!adapter.autoTranslate);
+                            return true;
+                        case R.id.itemTranslateOutgoing:
+                            adapter.chatListener.onTranslateOutgoingChanged(!adapter.translateOutgoing);
                             return true;
                         default:
                             return true;
@@ -155,46 +247,19 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
             });
         }
 
-        private void translate(String text) {
-            FirebaseTranslatorOptions options;
-            if(defaultLang.equals("Hindi")) {
-                options = new FirebaseTranslatorOptions.Builder()
-                        .setSourceLanguage(FirebaseTranslateLanguage.EN)
-                        .setTargetLanguage(FirebaseTranslateLanguage.HI)
-                        .build();
-            }
-            else {
-                options = new FirebaseTranslatorOptions.Builder()
-                        .setSourceLanguage(FirebaseTranslateLanguage.EN)
-                        .setTargetLanguage(FirebaseTranslateLanguage.KN)
-                        .build();
-            }
-
-            final FirebaseTranslator translator = FirebaseNaturalLanguage.getInstance().getTranslator(options);
-
-            FirebaseModelDownloadConditions conditions = new FirebaseModelDownloadConditions.Builder().build();
-
-            translator.downloadModelIfNeeded(conditions)
-                    .addOnSuccessListener(
-                            v -> {
-                                firebaseTranslate(translator, text);
-                            })
-                    .addOnFailureListener(
-                            e -> {
-                            });
-        }
-        
-        private void firebaseTranslate(FirebaseTranslator englishGermanTranslator, String text) {
-            englishGermanTranslator.translate(text)
-                    .addOnSuccessListener(
-                            translatedText -> {
-                                // Translation successful.
-                                binding.textMessage.setText(translatedText);
-                                binding.translated.setVisibility(View.VISIBLE);
-                            })
-                    .addOnFailureListener(
-                            e -> {
-                            });
+        private void translate() {
+            ChatMessages message = chatMessage;
+            TranslationCache.getInstance(binding.getRoot().getContext()).translate(
+                    message.id,
+                    message.message,
+                    defaultLang,
+                    translatedText -> {
+                        // Already in the reader's language; nothing to mark as translated.
+                        if(translatedText != null && !translatedText.equals(message.message)) {
+                            message.translatedMessage = translatedText;
+                            adapter.notifyTranslated(message);
+                        }
+                    });
         }
     }
 }
@@ -1,9 +1,7 @@
 package com.example.final_year_project.adapters;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.util.Base64;
 import android.view.LayoutInflater;
+import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
@@ -13,6 +11,7 @@ import com.example.final_year_project.databinding.ItemContainerRecentConversionB
 import com.example.final_year_project.listeners.ConversionListener;
 import com.example.final_year_project.models.ChatMessages;
 import com.example.final_year_project.models.User;
+import com.example.final_year_project.utilities.ImageLoader;
 
 import java.util.List;
 
@@ -60,22 +59,25 @@ public class RecentConversationAdapter extends RecyclerView.Adapter<RecentConver
         }
 
         void setData(ChatMessages chatMessages) {
-            binding.imageProfile.setImageBitmap(getConversionImage(chatMessages.conversionImage));
+            ImageLoader.getInstance(binding.getRoot().getContext())
+                    .load(binding.imageProfile, chatMessages.conversionId, chatMessages.conversionImageHash, chatMessages.conversionImage);
             binding.textName.setText(chatMessages.conversionName);
             binding.textRecentMessage.setText(chatMessages.message);
+            if(chatMessages.unreadCount > 0) {
+                binding.textUnreadCount.setText(String.valueOf(chatMessages.unreadCount));
+                binding.textUnreadCount.setVisibility(View.VISIBLE);
+            } else {
+                binding.textUnreadCount.setVisibility(View.GONE);
+            }
             binding.getRoot().setOnClickListener(v -> {
                 User user = new User();
                 user.id = chatMessages.conversionId;
                 user.name = chatMessages.conversionName;
                 user.image = chatMessages.conversionImage;
+                user.imageHash = chatMessages.conversionImageHash;
                 conversionListener.onConversionClicked(user);
             });
         }
     }
 
-    private Bitmap getConversionImage(String encodedImage) {
-        byte[] bytes = Base64.decode(encodedImage, Base64.DEFAULT);
-        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-    }
-
 }
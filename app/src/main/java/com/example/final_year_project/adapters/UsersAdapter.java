@@ -1,8 +1,5 @@
 package com.example.final_year_project.adapters;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.util.Base64;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 
@@ -12,6 +9,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.final_year_project.databinding.ItemContainerUserBinding;
 import com.example.final_year_project.listeners.UserListener;
 import com.example.final_year_project.models.User;
+import com.example.final_year_project.utilities.ImageLoader;
 
 import java.util.List;
 
@@ -59,13 +57,8 @@ public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHold
         void setUserData(User user) {
             binding.textName.setText(user.name);
             binding.textEmail.setText(user.email);
-            binding.imageProfile.setImageBitmap(getUserImage(user.image));
+            ImageLoader.getInstance(binding.getRoot().getContext()).load(binding.imageProfile, user.id, user.imageHash, user.image);
             binding.getRoot().setOnClickListener(v -> userListener.onUserClicked(user));
         }
     }
-
-    private Bitmap getUserImage(String encodedImage) {
-        byte[] bytes = Base64.decode(encodedImage, Base64.DEFAULT);
-        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-    }
 }
@@ -0,0 +1,109 @@
+package com.example.final_year_project.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+public class ChatDatabase extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "chat_cache.db";
+    private static final int DATABASE_VERSION = 2;
+
+    public static final String TABLE_MESSAGES = "messages";
+    public static final String TABLE_CONVERSATIONS = "conversations";
+    public static final String TABLE_WATERMARKS = "watermarks";
+    public static final String TABLE_OUTBOX = "outbox";
+    public static final String TABLE_TRANSLATIONS = "translations";
+
+    public static final String COLUMN_ID = "id";
+    public static final String COLUMN_CHANNEL_ID = "channel_id";
+    public static final String COLUMN_SENDER_ID = "sender_id";
+    public static final String COLUMN_RECEIVER_ID = "receiver_id";
+    public static final String COLUMN_MESSAGE = "message";
+    public static final String COLUMN_TIMESTAMP = "timestamp";
+    public static final String COLUMN_CONVERSION_ID = "conversion_id";
+    public static final String COLUMN_CONVERSION_NAME = "conversion_name";
+    public static final String COLUMN_CONVERSION_IMAGE = "conversion_image";
+    public static final String COLUMN_CONVERSION_IMAGE_HASH = "conversion_image_hash";
+    public static final String COLUMN_UNREAD_COUNT = "unread_count";
+    public static final String COLUMN_KEY = "watermark_key";
+    public static final String COLUMN_SENDER_NAME = "sender_name";
+    public static final String COLUMN_SENDER_IMAGE = "sender_image";
+    public static final String COLUMN_RECEIVER_NAME = "receiver_name";
+    public static final String COLUMN_RECEIVER_IMAGE = "receiver_image";
+    public static final String COLUMN_SENDER_IMAGE_HASH = "sender_image_hash";
+    public static final String COLUMN_RECEIVER_IMAGE_HASH = "receiver_image_hash";
+    public static final String COLUMN_NEW_CONVERSATION = "new_conversation";
+    public static final String COLUMN_TARGET_LANGUAGE = "target_language";
+    public static final String COLUMN_TRANSLATED_MESSAGE = "translated_message";
+    public static final String COLUMN_TRANSLATED_LANGUAGE = "translated_language";
+
+    public ChatDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_MESSAGES + " ("
+                + COLUMN_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_CHANNEL_ID + " TEXT NOT NULL, "
+                + COLUMN_SENDER_ID + " TEXT, "
+                + COLUMN_RECEIVER_ID + " TEXT, "
+                + COLUMN_MESSAGE + " TEXT, "
+                + COLUMN_TRANSLATED_MESSAGE + " TEXT, "
+                + COLUMN_TRANSLATED_LANGUAGE + " TEXT, "
+                + COLUMN_TIMESTAMP + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX index_messages_channel_timestamp ON " + TABLE_MESSAGES
+                + " (" + COLUMN_CHANNEL_ID + ", " + COLUMN_TIMESTAMP + ")");
+        db.execSQL("CREATE TABLE " + TABLE_CONVERSATIONS + " ("
+                + COLUMN_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_SENDER_ID + " TEXT, "
+                + COLUMN_RECEIVER_ID + " TEXT, "
+                + COLUMN_CONVERSION_ID + " TEXT, "
+                + COLUMN_CONVERSION_NAME + " TEXT, "
+                + COLUMN_CONVERSION_IMAGE + " TEXT, "
+                + COLUMN_CONVERSION_IMAGE_HASH + " TEXT, "
+                + COLUMN_UNREAD_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_MESSAGE + " TEXT, "
+                + COLUMN_TIMESTAMP + " INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + TABLE_WATERMARKS + " ("
+                + COLUMN_KEY + " TEXT PRIMARY KEY, "
+                + COLUMN_TIMESTAMP + " INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + TABLE_TRANSLATIONS + " ("
+                + COLUMN_ID + " TEXT NOT NULL, "
+                + COLUMN_TARGET_LANGUAGE + " TEXT NOT NULL, "
+                + COLUMN_TRANSLATED_MESSAGE + " TEXT NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_ID + ", " + COLUMN_TARGET_LANGUAGE + "))");
+        createOutbox(db);
+    }
+
+    private void createOutbox(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_OUTBOX + " ("
+                + COLUMN_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_CHANNEL_ID + " TEXT NOT NULL, "
+                + COLUMN_CONVERSION_ID + " TEXT NOT NULL, "
+                + COLUMN_SENDER_ID + " TEXT, "
+                + COLUMN_SENDER_NAME + " TEXT, "
+                + COLUMN_SENDER_IMAGE + " TEXT, "
+                + COLUMN_SENDER_IMAGE_HASH + " TEXT, "
+                + COLUMN_RECEIVER_ID + " TEXT, "
+                + COLUMN_RECEIVER_NAME + " TEXT, "
+                + COLUMN_RECEIVER_IMAGE + " TEXT, "
+                + COLUMN_RECEIVER_IMAGE_HASH + " TEXT, "
+                + COLUMN_MESSAGE + " TEXT, "
+                + COLUMN_TRANSLATED_MESSAGE + " TEXT, "
+                + COLUMN_TRANSLATED_LANGUAGE + " TEXT, "
+                + COLUMN_NEW_CONVERSATION + " INTEGER NOT NULL, "
+                + COLUMN_TIMESTAMP + " INTEGER NOT NULL)");
+    }
+
+    // The cache tables are rebuilt from Firestore on upgrade; the outbox holds unsent messages and is kept.
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_MESSAGES);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CONVERSATIONS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_WATERMARKS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TRANSLATIONS);
+        onCreate(db);
+    }
+}
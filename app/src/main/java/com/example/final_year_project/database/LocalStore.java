@@ -0,0 +1,339 @@
+package com.example.final_year_project.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.final_year_project.models.ChatMessages;
+import com.example.final_year_project.models.OutgoingMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * On-disk copy of chat messages and conversation summaries. Screens render from here first and
+ * then only ask Firestore for documents newer than the stored watermark.
+ * All disk work runs on one background thread; callbacks are delivered on the main thread.
+ */
+public class LocalStore {
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    public static final String WATERMARK_CONVERSATIONS = "conversations";
+
+    private static LocalStore instance;
+
+    private final ChatDatabase chatDatabase;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private LocalStore(Context context) {
+        chatDatabase = new ChatDatabase(context.getApplicationContext());
+    }
+
+    public static synchronized LocalStore getInstance(Context context) {
+        if(instance == null) {
+            instance = new LocalStore(context);
+        }
+        return instance;
+    }
+
+    public void loadMessages(String channelId, Date before, int limit, Callback<List<ChatMessages>> callback) {
+        executor.execute(() -> {
+            String selection = ChatDatabase.COLUMN_CHANNEL_ID + " = ?";
+            String[] selectionArgs;
+            if(before != null) {
+                selection += " AND " + ChatDatabase.COLUMN_TIMESTAMP + " < ?";
+                selectionArgs = new String[]{channelId, String.valueOf(before.getTime())};
+            } else {
+                selectionArgs = new String[]{channelId};
+            }
+            List<ChatMessages> messages = new ArrayList<>();
+            try (Cursor cursor = chatDatabase.getReadableDatabase().query(
+                    ChatDatabase.TABLE_MESSAGES,
+                    null,
+                    selection,
+                    selectionArgs,
+                    null,
+                    null,
+                    ChatDatabase.COLUMN_TIMESTAMP + " DESC",
+                    String.valueOf(limit))) {
+                while(cursor.moveToNext()) {
+                    ChatMessages chatMessage = new ChatMessages();
+                    chatMessage.id = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_ID));
+                    chatMessage.senderId = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_SENDER_ID));
+                    chatMessage.receiverId = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_RECEIVER_ID));
+                    chatMessage.message = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_MESSAGE));
+                    chatMessage.translatedMessage = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_TRANSLATED_MESSAGE));
+                    chatMessage.translatedLanguage = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_TRANSLATED_LANGUAGE));
+                    chatMessage.dataObject = new Date(cursor.getLong(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_TIMESTAMP)));
+                    messages.add(chatMessage);
+                }
+            }
+            Collections.reverse(messages);
+            mainHandler.post(() -> callback.onResult(messages));
+        });
+    }
+
+    public void saveMessages(String channelId, List<ChatMessages> messages, Date watermark) {
+        executor.execute(() -> {
+            SQLiteDatabase db = chatDatabase.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for(ChatMessages chatMessage : messages) {
+                    ContentValues values = new ContentValues();
+                    values.put(ChatDatabase.COLUMN_ID, chatMessage.id);
+                    values.put(ChatDatabase.COLUMN_CHANNEL_ID, channelId);
+                    values.put(ChatDatabase.COLUMN_SENDER_ID, chatMessage.senderId);
+                    values.put(ChatDatabase.COLUMN_RECEIVER_ID, chatMessage.receiverId);
+                    values.put(ChatDatabase.COLUMN_MESSAGE, chatMessage.message);
+                    values.put(ChatDatabase.COLUMN_TRANSLATED_MESSAGE, chatMessage.translatedLanguage != null ? chatMessage.translatedMessage : null);
+                    values.put(ChatDatabase.COLUMN_TRANSLATED_LANGUAGE, chatMessage.translatedLanguage);
+                    values.put(ChatDatabase.COLUMN_TIMESTAMP, chatMessage.dataObject.getTime());
+                    db.insertWithOnConflict(ChatDatabase.TABLE_MESSAGES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                }
+                if(watermark != null) {
+                    raiseWatermark(db, channelId, watermark);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    public void deleteMessage(String id) {
+        executor.execute(() -> chatDatabase.getWritableDatabase().delete(
+                ChatDatabase.TABLE_MESSAGES,
+                ChatDatabase.COLUMN_ID + " = ?",
+                new String[]{id}
+        ));
+    }
+
+    public void loadConversations(Callback<List<ChatMessages>> callback) {
+        executor.execute(() -> {
+            List<ChatMessages> conversations = new ArrayList<>();
+            try (Cursor cursor = chatDatabase.getReadableDatabase().query(
+                    ChatDatabase.TABLE_CONVERSATIONS,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    ChatDatabase.COLUMN_TIMESTAMP + " DESC")) {
+                while(cursor.moveToNext()) {
+                    ChatMessages chatMessage = new ChatMessages();
+                    chatMessage.id = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_ID));
+                    chatMessage.senderId = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_SENDER_ID));
+                    chatMessage.receiverId = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_RECEIVER_ID));
+                    chatMessage.conversionId = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_CONVERSION_ID));
+                    chatMessage.conversionName = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_CONVERSION_NAME));
+                    chatMessage.conversionImage = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_CONVERSION_IMAGE));
+                    chatMessage.conversionImageHash = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_CONVERSION_IMAGE_HASH));
+                    chatMessage.unreadCount = cursor.getInt(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_UNREAD_COUNT));
+                    chatMessage.message = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_MESSAGE));
+                    chatMessage.dataObject = new Date(cursor.getLong(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_TIMESTAMP)));
+                    conversations.add(chatMessage);
+                }
+            }
+            mainHandler.post(() -> callback.onResult(conversations));
+        });
+    }
+
+    public void saveConversations(List<ChatMessages> conversations, Date watermark) {
+        executor.execute(() -> {
+            SQLiteDatabase db = chatDatabase.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for(ChatMessages chatMessage : conversations) {
+                    ContentValues values = new ContentValues();
+                    values.put(ChatDatabase.COLUMN_ID, chatMessage.id);
+                    values.put(ChatDatabase.COLUMN_SENDER_ID, chatMessage.senderId);
+                    values.put(ChatDatabase.COLUMN_RECEIVER_ID, chatMessage.receiverId);
+                    values.put(ChatDatabase.COLUMN_CONVERSION_ID, chatMessage.conversionId);
+                    values.put(ChatDatabase.COLUMN_CONVERSION_NAME, chatMessage.conversionName);
+                    values.put(ChatDatabase.COLUMN_CONVERSION_IMAGE, chatMessage.conversionImage);
+                    values.put(ChatDatabase.COLUMN_CONVERSION_IMAGE_HASH, chatMessage.conversionImageHash);
+                    values.put(ChatDatabase.COLUMN_UNREAD_COUNT, chatMessage.unreadCount);
+                    values.put(ChatDatabase.COLUMN_MESSAGE, chatMessage.message);
+                    values.put(ChatDatabase.COLUMN_TIMESTAMP, chatMessage.dataObject.getTime());
+                    db.insertWithOnConflict(ChatDatabase.TABLE_CONVERSATIONS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                }
+                if(watermark != null) {
+                    raiseWatermark(db, WATERMARK_CONVERSATIONS, watermark);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    public void loadWatermark(String key, Callback<Date> callback) {
+        executor.execute(() -> {
+            Date watermark = readWatermark(chatDatabase.getReadableDatabase(), key);
+            mainHandler.post(() -> callback.onResult(watermark));
+        });
+    }
+
+    public void loadTranslation(String messageId, String targetLanguage, Callback<String> callback) {
+        executor.execute(() -> {
+            String translation = null;
+            try (Cursor cursor = chatDatabase.getReadableDatabase().query(
+                    ChatDatabase.TABLE_TRANSLATIONS,
+                    new String[]{ChatDatabase.COLUMN_TRANSLATED_MESSAGE},
+                    ChatDatabase.COLUMN_ID + " = ? AND " + ChatDatabase.COLUMN_TARGET_LANGUAGE + " = ?",
+                    new String[]{messageId, targetLanguage},
+                    null,
+                    null,
+                    null)) {
+                if(cursor.moveToFirst()) {
+                    translation = cursor.getString(0);
+                }
+            }
+            String result = translation;
+            mainHandler.post(() -> callback.onResult(result));
+        });
+    }
+
+    public void saveTranslation(String messageId, String targetLanguage, String translation) {
+        executor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(ChatDatabase.COLUMN_ID, messageId);
+            values.put(ChatDatabase.COLUMN_TARGET_LANGUAGE, targetLanguage);
+            values.put(ChatDatabase.COLUMN_TRANSLATED_MESSAGE, translation);
+            chatDatabase.getWritableDatabase().insertWithOnConflict(
+                    ChatDatabase.TABLE_TRANSLATIONS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        });
+    }
+
+    public void saveOutgoing(OutgoingMessage outgoingMessage, Runnable onSaved) {
+        executor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(ChatDatabase.COLUMN_ID, outgoingMessage.id);
+            values.put(ChatDatabase.COLUMN_CHANNEL_ID, outgoingMessage.channelId);
+            values.put(ChatDatabase.COLUMN_CONVERSION_ID, outgoingMessage.conversationId);
+            values.put(ChatDatabase.COLUMN_SENDER_ID, outgoingMessage.senderId);
+            values.put(ChatDatabase.COLUMN_SENDER_NAME, outgoingMessage.senderName);
+            values.put(ChatDatabase.COLUMN_SENDER_IMAGE, outgoingMessage.senderImage);
+            values.put(ChatDatabase.COLUMN_SENDER_IMAGE_HASH, outgoingMessage.senderImageHash);
+            values.put(ChatDatabase.COLUMN_RECEIVER_ID, outgoingMessage.receiverId);
+            values.put(ChatDatabase.COLUMN_RECEIVER_NAME, outgoingMessage.receiverName);
+            values.put(ChatDatabase.COLUMN_RECEIVER_IMAGE, outgoingMessage.receiverImage);
+            values.put(ChatDatabase.COLUMN_RECEIVER_IMAGE_HASH, outgoingMessage.receiverImageHash);
+            values.put(ChatDatabase.COLUMN_MESSAGE, outgoingMessage.message);
+            values.put(ChatDatabase.COLUMN_TRANSLATED_MESSAGE, outgoingMessage.translatedMessage);
+            values.put(ChatDatabase.COLUMN_TRANSLATED_LANGUAGE, outgoingMessage.translatedLanguage);
+            values.put(ChatDatabase.COLUMN_NEW_CONVERSATION, outgoingMessage.newConversation ? 1 : 0);
+            values.put(ChatDatabase.COLUMN_TIMESTAMP, outgoingMessage.timestamp.getTime());
+            chatDatabase.getWritableDatabase().insertWithOnConflict(
+                    ChatDatabase.TABLE_OUTBOX, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            mainHandler.post(onSaved);
+        });
+    }
+
+    public void loadOutgoing(Callback<List<OutgoingMessage>> callback) {
+        executor.execute(() -> {
+            List<OutgoingMessage> outgoingMessages = new ArrayList<>();
+            try (Cursor cursor = chatDatabase.getReadableDatabase().query(
+                    ChatDatabase.TABLE_OUTBOX,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    ChatDatabase.COLUMN_TIMESTAMP + " ASC")) {
+                while(cursor.moveToNext()) {
+                    OutgoingMessage outgoingMessage = new OutgoingMessage();
+                    outgoingMessage.id = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_ID));
+                    outgoingMessage.channelId = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_CHANNEL_ID));
+                    outgoingMessage.conversationId = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_CONVERSION_ID));
+                    outgoingMessage.senderId = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_SENDER_ID));
+                    outgoingMessage.senderName = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_SENDER_NAME));
+                    outgoingMessage.senderImage = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_SENDER_IMAGE));
+                    outgoingMessage.senderImageHash = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_SENDER_IMAGE_HASH));
+                    outgoingMessage.receiverId = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_RECEIVER_ID));
+                    outgoingMessage.receiverName = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_RECEIVER_NAME));
+                    outgoingMessage.receiverImage = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_RECEIVER_IMAGE));
+                    outgoingMessage.receiverImageHash = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_RECEIVER_IMAGE_HASH));
+                    outgoingMessage.message = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_MESSAGE));
+                    outgoingMessage.translatedMessage = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_TRANSLATED_MESSAGE));
+                    outgoingMessage.translatedLanguage = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_TRANSLATED_LANGUAGE));
+                    outgoingMessage.newConversation = cursor.getInt(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_NEW_CONVERSATION)) == 1;
+                    outgoingMessage.timestamp = new Date(cursor.getLong(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_TIMESTAMP)));
+                    outgoingMessages.add(outgoingMessage);
+                }
+            }
+            mainHandler.post(() -> callback.onResult(outgoingMessages));
+        });
+    }
+
+    public void updateOutgoingTranslation(String id, String translation, String language) {
+        executor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(ChatDatabase.COLUMN_TRANSLATED_MESSAGE, translation);
+            values.put(ChatDatabase.COLUMN_TRANSLATED_LANGUAGE, language);
+            chatDatabase.getWritableDatabase().update(
+                    ChatDatabase.TABLE_OUTBOX,
+                    values,
+                    ChatDatabase.COLUMN_ID + " = ?",
+                    new String[]{id}
+            );
+        });
+    }
+
+    public void deleteOutgoing(String id) {
+        executor.execute(() -> chatDatabase.getWritableDatabase().delete(
+                ChatDatabase.TABLE_OUTBOX,
+                ChatDatabase.COLUMN_ID + " = ?",
+                new String[]{id}
+        ));
+    }
+
+    public void clear() {
+        executor.execute(() -> {
+            SQLiteDatabase db = chatDatabase.getWritableDatabase();
+            db.delete(ChatDatabase.TABLE_MESSAGES, null, null);
+            db.delete(ChatDatabase.TABLE_CONVERSATIONS, null, null);
+            db.delete(ChatDatabase.TABLE_WATERMARKS, null, null);
+            db.delete(ChatDatabase.TABLE_OUTBOX, null, null);
+            db.delete(ChatDatabase.TABLE_TRANSLATIONS, null, null);
+        });
+    }
+
+    private Date readWatermark(SQLiteDatabase db, String key) {
+        try (Cursor cursor = db.query(
+                ChatDatabase.TABLE_WATERMARKS,
+                new String[]{ChatDatabase.COLUMN_TIMESTAMP},
+                ChatDatabase.COLUMN_KEY + " = ?",
+                new String[]{key},
+                null,
+                null,
+                null)) {
+            if(cursor.moveToFirst()) {
+                return new Date(cursor.getLong(0));
+            }
+            return null;
+        }
+    }
+
+    private void raiseWatermark(SQLiteDatabase db, String key, Date watermark) {
+        Date current = readWatermark(db, key);
+        if(current != null && !watermark.after(current)) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(ChatDatabase.COLUMN_KEY, key);
+        values.put(ChatDatabase.COLUMN_TIMESTAMP, watermark.getTime());
+        db.insertWithOnConflict(ChatDatabase.TABLE_WATERMARKS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.final_year_project.firebase;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.app.Person;
+
+import com.example.final_year_project.R;
+import com.example.final_year_project.activities.ChatActivity;
+import com.example.final_year_project.models.User;
+import com.example.final_year_project.utilities.Constants;
+import com.example.final_year_project.utilities.UserCache;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One notification per sender, updated in place as messages arrive. The notification id is derived
+ * from the sender id, the last few messages are kept in memory for the MessagingStyle, and updates
+ * for the same sender are throttled so a burst of pushes results in a handful of notify calls.
+ */
+public class ChatNotifications {
+
+    private static final String CHANNEL_ID = "chat_message";
+    private static final int MAX_LINES = 7;
+    private static final long MIN_UPDATE_INTERVAL_MS = 1000;
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+    private static final Map<String, Conversation> conversations = new HashMap<>();
+
+    public static void createChannel(Context context) {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            CharSequence channelName = "Chat Message";
+            String channelDescription = "This notification channel is used for chat message notifications";
+            int importance = NotificationManager.IMPORTANCE_DEFAULT;
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, channelName, importance);
+            channel.setDescription(channelDescription);
+            NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
+            notificationManager.createNotificationChannel(channel);
+        }
+    }
+
+    public static int notificationId(String senderId) {
+        return senderId.hashCode();
+    }
+
+    /** Adds messages from {@code user} and posts or schedules the updated notification. */
+    public static synchronized void show(Context context, User user, List<Message> messages, int count) {
+        Context appContext = context.getApplicationContext();
+        Conversation conversation = conversations.get(user.id);
+        if(conversation == null) {
+            conversation = new Conversation(user);
+            conversations.put(user.id, conversation);
+        }
+        conversation.user = user;
+        for(Message message : messages) {
+            conversation.messages.put(message.id, message);
+        }
+        while(conversation.messages.size() > MAX_LINES) {
+            conversation.messages.remove(conversation.messages.keySet().iterator().next());
+        }
+        conversation.count += count;
+
+        long wait = conversation.lastPosted + MIN_UPDATE_INTERVAL_MS - SystemClock.elapsedRealtime();
+        if(wait <= 0) {
+            post(appContext, conversation);
+        } else if(!conversation.scheduled) {
+            conversation.scheduled = true;
+            Conversation scheduled = conversation;
+            handler.postDelayed(() -> {
+                synchronized(ChatNotifications.class) {
+                    scheduled.scheduled = false;
+                    if(conversations.get(scheduled.user.id) == scheduled) {
+                        post(appContext, scheduled);
+                    }
+                }
+            }, wait);
+        }
+    }
+
+    /** Dismisses the sender's notification and forgets its messages, e.g. when the chat is opened. */
+    public static synchronized void cancel(Context context, String senderId) {
+        conversations.remove(senderId);
+        NotificationManagerCompat.from(context).cancel(notificationId(senderId));
+    }
+
+    private static void post(Context context, Conversation conversation) {
+        conversation.lastPosted = SystemClock.elapsedRealtime();
+        int notificationId = notificationId(conversation.user.id);
+
+        Intent intent = new Intent(context, ChatActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        intent.putExtra(Constants.KEY_USER, UserCache.getInstance().put(conversation.user));
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            flags |= PendingIntent.FLAG_IMMUTABLE;
+        }
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, notificationId, intent, flags);
+
+        String myName = new PreferenceManager(context).getName();
+        Person me = new Person.Builder()
+                .setName(myName != null ? myName : context.getString(R.string.you))
+                .build();
+        Person sender = new Person.Builder()
+                .setKey(conversation.user.id)
+                .setName(conversation.user.name)
+                .build();
+        NotificationCompat.MessagingStyle style = new NotificationCompat.MessagingStyle(me);
+        for(Message message : conversation.messages.values()) {
+            style.addMessage(message.text, message.timestamp, sender);
+        }
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID);
+        builder.setSmallIcon(R.drawable.ic_notification);
+        builder.setContentTitle(conversation.user.name);
+        builder.setStyle(style);
+        builder.setNumber(conversation.count);
+        builder.setPriority(NotificationCompat.PRIORITY_DEFAULT);
+        builder.setCategory(NotificationCompat.CATEGORY_MESSAGE);
+        builder.setContentIntent(pendingIntent);
+        builder.setOnlyAlertOnce(true);
+        builder.setAutoCancel(true);
+
+        NotificationManagerCompat.from(context).notify(notificationId, builder.build());
+    }
+
+    public static class Message {
+        public final String id;
+        public final String text;
+        public final long timestamp;
+
+        public Message(String id, String text, long timestamp) {
+            this.id = id;
+            this.text = text;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private static class Conversation {
+        User user;
+        final LinkedHashMap<String, Message> messages = new LinkedHashMap<>();
+        int count;
+        long lastPosted;
+        boolean scheduled;
+
+        Conversation(User user) {
+            this.user = user;
+        }
+    }
+}
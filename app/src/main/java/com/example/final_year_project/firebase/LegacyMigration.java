@@ -0,0 +1,92 @@
+package com.example.final_year_project.firebase;
+
+import com.example.final_year_project.utilities.Channels;
+import com.example.final_year_project.utilities.Constants;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Brings data written before messages moved into channels into the current layout. Messages of
+ * the flat chat collection are copied into their channel under the same document id, so running
+ * this again, or from both participants, writes the same documents. Old conversation summaries
+ * get the participants array the home screen queries by, once their history has been copied.
+ */
+public class LegacyMigration {
+
+    private static final int BATCH_LIMIT = 500;
+
+    /** Migrates every conversation of {@code userId} that has no participants array yet. */
+    public static Task<Void> migrate(String userId) {
+        CollectionReference conversations = FirebaseFirestore.getInstance()
+                .collection(Constants.KEY_COLLECTION_CONVERSATIONS);
+        return Tasks.<QuerySnapshot>whenAllSuccess(
+                conversations.whereEqualTo(Constants.KEY_SENDER_ID, userId).get(),
+                conversations.whereEqualTo(Constants.KEY_RECEIVER_ID, userId).get()
+        ).onSuccessTask(results -> {
+            List<Task<Void>> migrations = new ArrayList<>();
+            for(QuerySnapshot result : results) {
+                for(DocumentSnapshot conversation : result.getDocuments()) {
+                    String senderId = conversation.getString(Constants.KEY_SENDER_ID);
+                    String receiverId = conversation.getString(Constants.KEY_RECEIVER_ID);
+                    if(conversation.contains(Constants.KEY_PARTICIPANTS) || senderId == null || receiverId == null) {
+                        continue;
+                    }
+                    // updatedAt lets a home screen listening from a watermark pick the summary up.
+                    migrations.add(migrateChannel(senderId, receiverId).onSuccessTask(copied ->
+                            conversation.getReference().update(
+                                    Constants.KEY_PARTICIPANTS, Arrays.asList(senderId, receiverId),
+                                    Constants.KEY_UPDATED_AT, FieldValue.serverTimestamp()
+                            )));
+                }
+            }
+            return Tasks.whenAll(migrations);
+        });
+    }
+
+    /** Copies the flat chat history of two users into their channel; resolves to the number of messages copied. */
+    public static Task<Integer> migrateChannel(String userId, String otherUserId) {
+        FirebaseFirestore database = FirebaseFirestore.getInstance();
+        CollectionReference chat = database.collection(Constants.KEY_COLLECTION_CHAT);
+        CollectionReference messages = database.collection(Constants.KEY_COLLECTION_CHANNELS)
+                .document(Channels.getChannelId(userId, otherUserId))
+                .collection(Constants.KEY_COLLECTION_MESSAGES);
+        return Tasks.<QuerySnapshot>whenAllSuccess(
+                chat.whereEqualTo(Constants.KEY_SENDER_ID, userId)
+                        .whereEqualTo(Constants.KEY_RECEIVER_ID, otherUserId).get(),
+                chat.whereEqualTo(Constants.KEY_SENDER_ID, otherUserId)
+                        .whereEqualTo(Constants.KEY_RECEIVER_ID, userId).get()
+        ).onSuccessTask(results -> {
+            List<Task<Void>> commits = new ArrayList<>();
+            WriteBatch batch = database.batch();
+            int batched = 0;
+            int copied = 0;
+            for(QuerySnapshot result : results) {
+                for(DocumentSnapshot legacy : result.getDocuments()) {
+                    batch.set(messages.document(legacy.getId()), legacy.getData(), SetOptions.merge());
+                    copied++;
+                    if(++batched == BATCH_LIMIT) {
+                        commits.add(batch.commit());
+                        batch = database.batch();
+                        batched = 0;
+                    }
+                }
+            }
+            if(batched > 0) {
+                commits.add(batch.commit());
+            }
+            int total = copied;
+            return Tasks.whenAll(commits).onSuccessTask(unused -> Tasks.forResult(total));
+        });
+    }
+}
@@ -1,26 +1,36 @@
 package com.example.final_year_project.firebase;
 
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.content.Intent;
-import android.os.Build;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
-import androidx.core.app.NotificationCompat;
-import androidx.core.app.NotificationManagerCompat;
 
-import com.example.final_year_project.R;
-import com.example.final_year_project.activities.ChatActivity;
+import com.example.final_year_project.database.LocalStore;
+import com.example.final_year_project.models.ChatMessages;
 import com.example.final_year_project.models.User;
+import com.example.final_year_project.utilities.Channels;
 import com.example.final_year_project.utilities.Constants;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.messaging.FirebaseMessagingService;
 import com.google.firebase.messaging.RemoteMessage;
 
-import java.util.Random;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class MessagingService extends FirebaseMessagingService {
 
+    private static final long WARM_INTERVAL_MS = 30000;
+    private static final Map<String, Long> lastWarmed = new HashMap<>();
+
     @Override
     public void onNewToken(@NonNull String token) {
         super.onNewToken(token);
@@ -29,42 +39,112 @@ public class MessagingService extends FirebaseMessagingService {
     @Override
     public void onMessageReceived(@NonNull RemoteMessage remoteMessage) {
         super.onMessageReceived(remoteMessage);
+        Map<String, String> data = remoteMessage.getData();
         User user = new User();
-        user.id = remoteMessage.getData().get(Constants.KEY_USER_ID);
-        user.name = remoteMessage.getData().get(Constants.KEY_NAME);
-        user.token = remoteMessage.getData().get(Constants.KEY_FCM_TOKEN);
-
-        int notificationId = new Random().nextInt();
-        String channelId = "chat_message";
+        user.id = data.get(Constants.KEY_USER_ID);
+        user.name = data.get(Constants.KEY_NAME);
+        user.token = data.get(Constants.KEY_FCM_TOKEN);
+        if(user.id == null) {
+            return;
+        }
 
-        Intent intent = new Intent(this, ChatActivity.class);
-        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-        intent.putExtra(Constants.KEY_USER, user);
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, intent, 0);
+        List<ChatNotifications.Message> messages = parseMessages(data, remoteMessage.getSentTime());
+        int count = messages.size();
+        if(data.get(Constants.REMOTE_MSG_COUNT) != null) {
+            try {
+                count = Integer.parseInt(data.get(Constants.REMOTE_MSG_COUNT));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        ChatNotifications.show(this, user, messages, count);
+        if(data.get(Constants.REMOTE_MSG_MESSAGES) != null) {
+            cacheMessages(user.id, messages);
+        }
+    }
 
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, channelId);
-        builder.setSmallIcon(R.drawable.ic_notification);
-        builder.setContentTitle(user.name);
-        builder.setContentText(remoteMessage.getData().get(Constants.KEY_MESSAGE));
-        builder.setStyle(new NotificationCompat.BigTextStyle().bigText(
-                remoteMessage.getData().get(Constants.KEY_MESSAGE)
-        ));
-        builder.setPriority(NotificationCompat.PRIORITY_DEFAULT);
-        builder.setContentIntent(pendingIntent);
-        builder.setAutoCancel(true);
+    /**
+     * Writes the pushed messages into the local cache and warms the sender's recent history so a
+     * tapped notification opens the chat already rendered. Neither write advances the channel's
+     * watermark: the cache may have a gap before these messages, and ChatActivity's live query
+     * from the old watermark is what fills it.
+     */
+    private void cacheMessages(String senderId, List<ChatNotifications.Message> messages) {
+        String userId = new PreferenceManager(getApplicationContext()).getUserId();
+        if(userId == null) {
+            return;
+        }
+        String channelId = Channels.getChannelId(userId, senderId);
+        LocalStore localStore = LocalStore.getInstance(getApplicationContext());
 
-        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            CharSequence channelName = "Chat Message";
-            String channelDescription = "This notification channel is used for chat message notifications";
-            int importance = NotificationManager.IMPORTANCE_DEFAULT;
-            NotificationChannel channel = new NotificationChannel(channelId, channelName, importance);
-            channel.setDescription(channelDescription);
-            NotificationManager notificationManager = getSystemService(NotificationManager.class);
-            notificationManager.createNotificationChannel(channel);
+        List<ChatMessages> pushed = new ArrayList<>();
+        for(ChatNotifications.Message message : messages) {
+            ChatMessages chatMessage = new ChatMessages();
+            chatMessage.id = message.id;
+            chatMessage.senderId = senderId;
+            chatMessage.receiverId = userId;
+            chatMessage.message = message.text;
+            chatMessage.dataObject = new Date(message.timestamp);
+            pushed.add(chatMessage);
+        }
+        if(pushed.size() > 0) {
+            localStore.saveMessages(channelId, pushed, null);
+        }
 
+        synchronized(lastWarmed) {
+            Long last = lastWarmed.get(channelId);
+            long now = SystemClock.elapsedRealtime();
+            if(last != null && now - last < WARM_INTERVAL_MS) {
+                return;
+            }
+            lastWarmed.put(channelId, now);
         }
-        NotificationManagerCompat notificationManagerCompat = NotificationManagerCompat.from(this);
-        notificationManagerCompat.notify(notificationId, builder.build());
+        FirebaseFirestore.getInstance()
+                .collection(Constants.KEY_COLLECTION_CHANNELS)
+                .document(channelId)
+                .collection(Constants.KEY_COLLECTION_MESSAGES)
+                .orderBy(Constants.KEY_TIMESTAMP, Query.Direction.DESCENDING)
+                .limit(Constants.MESSAGE_PAGE_SIZE)
+                .get()
+                .addOnSuccessListener(querySnapshot -> {
+                    List<ChatMessages> page = new ArrayList<>();
+                    for(DocumentSnapshot documentSnapshot : querySnapshot.getDocuments()) {
+                        ChatMessages chatMessage = new ChatMessages();
+                        chatMessage.id = documentSnapshot.getId();
+                        chatMessage.senderId = documentSnapshot.getString(Constants.KEY_SENDER_ID);
+                        chatMessage.receiverId = documentSnapshot.getString(Constants.KEY_RECEIVER_ID);
+                        chatMessage.message = documentSnapshot.getString(Constants.KEY_MESSAGE);
+                        chatMessage.dataObject = documentSnapshot.getDate(Constants.KEY_TIMESTAMP);
+                        if(chatMessage.dataObject != null) {
+                            page.add(chatMessage);
+                        }
+                    }
+                    localStore.saveMessages(channelId, page, null);
+                });
+    }
 
+    private List<ChatNotifications.Message> parseMessages(Map<String, String> data, long sentTime) {
+        String messages = data.get(Constants.REMOTE_MSG_MESSAGES);
+        if(messages != null) {
+            try {
+                JSONArray array = new JSONArray(messages);
+                List<ChatNotifications.Message> result = new ArrayList<>();
+                for(int i = 0; i < array.length(); i++) {
+                    JSONObject message = array.getJSONObject(i);
+                    result.add(new ChatNotifications.Message(
+                            message.getString(Constants.KEY_ID),
+                            message.getString(Constants.KEY_MESSAGE),
+                            message.getLong(Constants.KEY_TIMESTAMP)
+                    ));
+                }
+                return result;
+            } catch (JSONException ignored) {
+            }
+        }
+        // Pushes from older clients carry a single message and no id.
+        return Collections.singletonList(new ChatNotifications.Message(
+                String.valueOf(sentTime),
+                data.get(Constants.KEY_MESSAGE),
+                sentTime
+        ));
     }
 }
@@ -0,0 +1,179 @@
+package com.example.final_year_project.firebase;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.final_year_project.database.LocalStore;
+import com.example.final_year_project.models.OutgoingMessage;
+import com.example.final_year_project.utilities.Constants;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Persistent queue of outgoing chat messages. A message is stored on disk under its
+ * client-generated id before it is written. The message document is written first, which works
+ * offline, then the conversation summary is updated in a transaction that only ever moves it
+ * forward. Rows are deleted once both writes are acknowledged and retried with exponential backoff
+ * otherwise; replaying a row rewrites the same message and leaves a newer summary alone, so it is
+ * idempotent. The receiver's unread count is raised in the same transaction, so a replay is never
+ * counted twice and the summary stays the same size however many messages go unread.
+ */
+public class Outbox {
+
+    private static final long INITIAL_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 60000;
+
+    private static Outbox instance;
+
+    private final LocalStore localStore;
+    private final FirebaseFirestore database = FirebaseFirestore.getInstance();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Set<String> inFlight = new HashSet<>();
+
+    private Outbox(Context context) {
+        localStore = LocalStore.getInstance(context);
+    }
+
+    public static synchronized Outbox getInstance(Context context) {
+        if(instance == null) {
+            instance = new Outbox(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public String newMessageId(String channelId) {
+        return database.collection(Constants.KEY_COLLECTION_CHANNELS)
+                .document(channelId)
+                .collection(Constants.KEY_COLLECTION_MESSAGES)
+                .document()
+                .getId();
+    }
+
+    public void enqueue(OutgoingMessage outgoingMessage) {
+        localStore.saveOutgoing(outgoingMessage, () -> commit(outgoingMessage));
+    }
+
+    /**
+     * Adds the sender-side translation to a message that may already be committed. The outbox row
+     * is updated too, so a later replay carries the translation instead of dropping it.
+     */
+    public void attachTranslation(OutgoingMessage outgoingMessage, String translation, String language) {
+        outgoingMessage.translatedMessage = translation;
+        outgoingMessage.translatedLanguage = language;
+        localStore.updateOutgoingTranslation(outgoingMessage.id, translation, language);
+        messageReference(outgoingMessage).update(
+                Constants.KEY_TRANSLATED_MESSAGE, translation,
+                Constants.KEY_TRANSLATED_LANGUAGE, language
+        );
+    }
+
+    public void flush() {
+        localStore.loadOutgoing(outgoingMessages -> {
+            for(OutgoingMessage outgoingMessage : outgoingMessages) {
+                commit(outgoingMessage);
+            }
+        });
+    }
+
+    private void commit(OutgoingMessage outgoingMessage) {
+        if(!inFlight.add(outgoingMessage.id)) {
+            return;
+        }
+        HashMap<String, Object> message = new HashMap<>();
+        message.put(Constants.KEY_SENDER_ID, outgoingMessage.senderId);
+        message.put(Constants.KEY_RECEIVER_ID, outgoingMessage.receiverId);
+        message.put(Constants.KEY_MESSAGE, outgoingMessage.message);
+        if(outgoingMessage.translatedMessage != null) {
+            message.put(Constants.KEY_TRANSLATED_MESSAGE, outgoingMessage.translatedMessage);
+            message.put(Constants.KEY_TRANSLATED_LANGUAGE, outgoingMessage.translatedLanguage);
+        }
+        message.put(Constants.KEY_TIMESTAMP, outgoingMessage.timestamp);
+
+        // Merged so a replay without the translation never removes one attached in the meantime.
+        messageReference(outgoingMessage).set(message, SetOptions.merge())
+                .continueWithTask(task -> {
+                    if(!task.isSuccessful()) {
+                        return task;
+                    }
+                    return updateConversation(outgoingMessage);
+                })
+                .addOnSuccessListener(unused -> {
+                    inFlight.remove(outgoingMessage.id);
+                    localStore.deleteOutgoing(outgoingMessage.id);
+                })
+                .addOnFailureListener(e -> {
+                    inFlight.remove(outgoingMessage.id);
+                    long delay = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(outgoingMessage.attempts, 6));
+                    outgoingMessage.attempts++;
+                    handler.postDelayed(() -> commit(outgoingMessage), delay);
+                });
+    }
+
+    /**
+     * Points the conversation summary at this message unless it already shows a newer one, e.g.
+     * because this row is replayed late or the other participant replied in the meantime.
+     */
+    private Task<Void> updateConversation(OutgoingMessage outgoingMessage) {
+        DocumentReference conversationReference = database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
+                .document(outgoingMessage.conversationId);
+        return database.runTransaction(transaction -> {
+            DocumentSnapshot current = transaction.get(conversationReference);
+            Date shown = current.getDate(Constants.KEY_TIMESTAMP);
+            if(shown != null && !outgoingMessage.timestamp.after(shown)) {
+                return null;
+            }
+            HashMap<String, Object> conversion = new HashMap<>();
+            if(!current.exists()) {
+                conversion.put(Constants.KEY_SENDER_ID, outgoingMessage.senderId);
+                conversion.put(Constants.KEY_SENDER_NAME, outgoingMessage.senderName);
+                putImage(conversion, Constants.KEY_SENDER_IMAGE_HASH, outgoingMessage.senderImageHash,
+                        Constants.KEY_SENDER_IMAGE, outgoingMessage.senderImage);
+                conversion.put(Constants.KEY_RECEIVER_ID, outgoingMessage.receiverId);
+                conversion.put(Constants.KEY_RECEIVER_NAME, outgoingMessage.receiverName);
+                putImage(conversion, Constants.KEY_RECEIVER_IMAGE_HASH, outgoingMessage.receiverImageHash,
+                        Constants.KEY_RECEIVER_IMAGE, outgoingMessage.receiverImage);
+            }
+            conversion.put(Constants.KEY_PARTICIPANTS, Arrays.asList(outgoingMessage.senderId, outgoingMessage.receiverId));
+            conversion.put(Constants.KEY_LAST_MESSAGE, outgoingMessage.message);
+            Object count = current.get(FieldPath.of(Constants.KEY_UNREAD, outgoingMessage.receiverId));
+            HashMap<String, Object> unread = new HashMap<>();
+            unread.put(outgoingMessage.receiverId, count instanceof Number ? ((Number) count).longValue() + 1 : 1L);
+            conversion.put(Constants.KEY_UNREAD, unread);
+            HashMap<String, Object> lastRead = new HashMap<>();
+            lastRead.put(outgoingMessage.senderId, outgoingMessage.timestamp);
+            conversion.put(Constants.KEY_LAST_READ, lastRead);
+            conversion.put(Constants.KEY_TIMESTAMP, outgoingMessage.timestamp);
+            conversion.put(Constants.KEY_UPDATED_AT, FieldValue.serverTimestamp());
+            transaction.set(conversationReference, conversion, SetOptions.merge());
+            return null;
+        });
+    }
+
+    private DocumentReference messageReference(OutgoingMessage outgoingMessage) {
+        return database.collection(Constants.KEY_COLLECTION_CHANNELS)
+                .document(outgoingMessage.channelId)
+                .collection(Constants.KEY_COLLECTION_MESSAGES)
+                .document(outgoingMessage.id);
+    }
+
+    // Accounts created before avatars moved to the blob store have no hash and keep the inline image.
+    private void putImage(HashMap<String, Object> conversion, String hashKey, String hash, String imageKey, String image) {
+        if(hash != null) {
+            conversion.put(hashKey, hash);
+        } else {
+            conversion.put(imageKey, image);
+        }
+    }
+}
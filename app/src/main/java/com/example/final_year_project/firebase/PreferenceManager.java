@@ -1,42 +1,57 @@
 package com.example.final_year_project.firebase;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 
-import com.example.final_year_project.utilities.Constants;
+import com.example.final_year_project.database.LocalStore;
 
+/**
+ * Key/value access to the signed-in user's settings, backed by the in-memory {@link Session}.
+ */
 public class PreferenceManager {
 
-    private final SharedPreferences sharedPreferences;
+    private final Session session;
 
     public PreferenceManager(Context context) {
-        sharedPreferences = context.getSharedPreferences(Constants.KEY_PREFERENCE_NAME, Context.MODE_PRIVATE);
-
+        session = Session.getInstance(context);
     }
 
     public void putBoolean(String key, Boolean value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putBoolean(key, value);
-        editor.apply();
+        session.putBoolean(key, value);
     }
 
     public Boolean getBoolean(String key) {
-        return sharedPreferences.getBoolean(key, false);
+        return session.getBoolean(key);
     }
 
     public void putString(String key, String value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(key, value);
-        editor.apply();
+        session.putString(key, value);
     }
 
     public String getString(String key) {
-        return sharedPreferences.getString(key, null);
+        return session.getString(key);
+    }
+
+    public String getUserId() {
+        return session.getUserId();
+    }
+
+    public String getName() {
+        return session.getName();
+    }
+
+    public String getLanguage() {
+        return session.getLanguage();
+    }
+
+    public boolean isSignedIn() {
+        return session.isSignedIn();
+    }
+
+    public void loadString(String key, LocalStore.Callback<String> callback) {
+        session.loadString(key, callback);
     }
 
     public void clear() {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.clear();
-        editor.apply();
+        session.clear();
     }
 }
@@ -0,0 +1,154 @@
+package com.example.final_year_project.firebase;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.example.final_year_project.utilities.Constants;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Source;
+
+import java.util.Date;
+import java.util.HashMap;
+
+/**
+ * Publishes the signed-in user's presence from the process lifecycle instead of each activity.
+ * Foreground/background flips are debounced so activity transitions and short trips to another
+ * app cost nothing, and only a change of state is written. While online a heartbeat refreshes
+ * {@code lastSeen}, so watchers can treat a stale document as offline if the process was killed.
+ * The document also carries the user's FCM token, so a chat partner learns whether and where to
+ * push from this small document instead of reading the whole user profile.
+ */
+public class Presence implements DefaultLifecycleObserver {
+
+    private static final long STALE_AFTER_MS = Constants.PRESENCE_HEARTBEAT_MS * 2;
+
+    private static Presence instance;
+
+    private final PreferenceManager preferenceManager;
+    private final FirebaseFirestore database = FirebaseFirestore.getInstance();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private boolean foreground = false;
+    private Boolean published = null;
+    private long serverOffsetMs = 0;
+    private boolean serverOffsetKnown = false;
+
+    private Presence(Context context) {
+        preferenceManager = new PreferenceManager(context);
+    }
+
+    public static synchronized Presence getInstance(Context context) {
+        if(instance == null) {
+            instance = new Presence(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Device time until which a presence document counts as online, or 0 when it describes an
+     * offline user. A killed process stops refreshing its document, so callers compare this with
+     * the clock when they need the answer instead of waiting for another snapshot. {@code lastSeen}
+     * is a server time, so it is moved onto this device's clock with the offset measured from this
+     * user's own presence writes; until one has been acknowledged every user counts as offline,
+     * which errs on the side of sending a push.
+     */
+    public long onlineUntil(DocumentSnapshot documentSnapshot) {
+        if(!serverOffsetKnown || documentSnapshot == null
+                || !Boolean.TRUE.equals(documentSnapshot.getBoolean(Constants.KEY_ONLINE))) {
+            return 0;
+        }
+        Date lastSeen = documentSnapshot.getDate(Constants.KEY_LAST_SEEN);
+        return lastSeen != null ? lastSeen.getTime() - serverOffsetMs + STALE_AFTER_MS : 0;
+    }
+
+    @Override
+    public void onStart(@NonNull LifecycleOwner owner) {
+        foreground = true;
+        schedule();
+    }
+
+    @Override
+    public void onStop(@NonNull LifecycleOwner owner) {
+        foreground = false;
+        schedule();
+    }
+
+    /** Publishes the current state right away, e.g. after signing in while already in the foreground. */
+    public void refresh() {
+        published = null;
+        handler.removeCallbacks(publish);
+        publish.run();
+    }
+
+    /** Marks the user offline immediately; called before the user id is cleared on sign out. */
+    public void signOut() {
+        handler.removeCallbacks(publish);
+        handler.removeCallbacks(heartbeat);
+        write(false, null);
+        published = null;
+    }
+
+    private void schedule() {
+        handler.removeCallbacks(publish);
+        handler.postDelayed(publish, Constants.PRESENCE_DEBOUNCE_MS);
+    }
+
+    private final Runnable publish = () -> {
+        if(published != null && published == foreground) {
+            return;
+        }
+        if(write(foreground)) {
+            published = foreground;
+        }
+        handler.removeCallbacks(this.heartbeat);
+        if(foreground) {
+            handler.postDelayed(this.heartbeat, Constants.PRESENCE_HEARTBEAT_MS);
+        }
+    };
+
+    private final Runnable heartbeat = new Runnable() {
+        @Override
+        public void run() {
+            if(write(true)) {
+                handler.postDelayed(this, Constants.PRESENCE_HEARTBEAT_MS);
+            }
+        }
+    };
+
+    private boolean write(boolean online) {
+        return write(online, preferenceManager.getString(Constants.KEY_FCM_TOKEN));
+    }
+
+    // A missing token field means the document was written by an older version that kept the token
+    // only on the user document; an explicit null means there is nobody to push to.
+    private boolean write(boolean online, String token) {
+        String userId = preferenceManager.getUserId();
+        if(userId == null) {
+            return false;
+        }
+        HashMap<String, Object> presence = new HashMap<>();
+        presence.put(Constants.KEY_ONLINE, online);
+        presence.put(Constants.KEY_FCM_TOKEN, token);
+        presence.put(Constants.KEY_LAST_SEEN, FieldValue.serverTimestamp());
+        DocumentReference documentReference = database.collection(Constants.KEY_COLLECTION_PRESENCE).document(userId);
+        documentReference.set(presence).addOnSuccessListener(unused -> {
+            long acknowledgedAt = System.currentTimeMillis();
+            documentReference.get(Source.CACHE).addOnSuccessListener(documentSnapshot -> {
+                // The server stamped lastSeen before acknowledging, so this is off by at most a round trip.
+                Date lastSeen = documentSnapshot.getDate(Constants.KEY_LAST_SEEN);
+                if(lastSeen != null) {
+                    serverOffsetMs = lastSeen.getTime() - acknowledgedAt;
+                    serverOffsetKnown = true;
+                }
+            });
+        });
+        return true;
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.final_year_project.firebase;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.final_year_project.database.LocalStore;
+import com.example.final_year_project.utilities.Constants;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory copy of the signed-in user's settings. Reads never touch disk; writes update memory
+ * at once and are flushed to SharedPreferences in one batch shortly after. Large values such as
+ * the base64 profile image live in their own files so they are not parsed with the prefs XML at
+ * startup; they are preloaded on the background thread and never read while holding the lock.
+ * Screens that need one during startup use {@link #loadString} instead of waiting for the disk.
+ * The fields read on every snapshot or push have typed accessors.
+ */
+public class Session {
+
+    private static final long FLUSH_DELAY_MS = 100;
+    private static final String BLOB_DIRECTORY = "session";
+    private static final Set<String> BLOB_KEYS = new HashSet<>(Arrays.asList(Constants.KEY_IMAGE));
+    private static final Object REMOVED = new Object();
+
+    private static Session instance;
+
+    private final SharedPreferences sharedPreferences;
+    private final File blobDirectory;
+    private final Map<String, Object> values = new HashMap<>();
+    private final Map<String, String> blobs = new HashMap<>();
+    private final Map<String, Object> dirty = new HashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private boolean flushScheduled = false;
+
+    private Session(Context context) {
+        sharedPreferences = context.getSharedPreferences(Constants.KEY_PREFERENCE_NAME, Context.MODE_PRIVATE);
+        blobDirectory = new File(context.getFilesDir(), BLOB_DIRECTORY);
+        values.putAll(sharedPreferences.getAll());
+        migrateBlobs();
+        executor.execute(() -> {
+            for(String key : BLOB_KEYS) {
+                getBlob(key);
+            }
+        });
+    }
+
+    public static synchronized Session getInstance(Context context) {
+        if(instance == null) {
+            instance = new Session(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public String getString(String key) {
+        if(BLOB_KEYS.contains(key)) {
+            return getBlob(key);
+        }
+        synchronized(this) {
+            Object value = values.get(key);
+            return value instanceof String ? (String) value : null;
+        }
+    }
+
+    /** Delivers {@code key} on the main thread, reading it on the background thread if it is not in memory yet. */
+    public void loadString(String key, LocalStore.Callback<String> callback) {
+        boolean inMemory;
+        synchronized(this) {
+            inMemory = !BLOB_KEYS.contains(key) || blobs.containsKey(key);
+        }
+        if(inMemory) {
+            callback.onResult(getString(key));
+            return;
+        }
+        executor.execute(() -> {
+            String value = getBlob(key);
+            handler.post(() -> callback.onResult(value));
+        });
+    }
+
+    public synchronized boolean getBoolean(String key) {
+        Object value = values.get(key);
+        return value instanceof Boolean && (Boolean) value;
+    }
+
+    public synchronized String getUserId() {
+        Object value = values.get(Constants.KEY_USER_ID);
+        return value instanceof String ? (String) value : null;
+    }
+
+    public synchronized String getName() {
+        Object value = values.get(Constants.KEY_NAME);
+        return value instanceof String ? (String) value : null;
+    }
+
+    public synchronized String getLanguage() {
+        Object value = values.get(Constants.KEY_LANGUAGE);
+        return value instanceof String ? (String) value : null;
+    }
+
+    public synchronized boolean isSignedIn() {
+        return getBoolean(Constants.KEY_IS_SIGNED_IN);
+    }
+
+    public synchronized void putString(String key, String value) {
+        if(BLOB_KEYS.contains(key)) {
+            blobs.put(key, value);
+            executor.execute(() -> writeBlob(key, value));
+            return;
+        }
+        put(key, value);
+    }
+
+    public synchronized void putBoolean(String key, boolean value) {
+        put(key, value);
+    }
+
+    public synchronized void clear() {
+        values.clear();
+        // Known to be empty from now on, so nothing reads the files that are about to be deleted.
+        for(String key : BLOB_KEYS) {
+            blobs.put(key, null);
+        }
+        dirty.clear();
+        executor.execute(() -> {
+            sharedPreferences.edit().clear().apply();
+            File[] files = blobDirectory.listFiles();
+            if(files != null) {
+                for(File file : files) {
+                    file.delete();
+                }
+            }
+        });
+    }
+
+    private void put(String key, Object value) {
+        if(value == null) {
+            values.remove(key);
+            dirty.put(key, REMOVED);
+        } else {
+            values.put(key, value);
+            dirty.put(key, value);
+        }
+        if(!flushScheduled) {
+            flushScheduled = true;
+            handler.postDelayed(this::flush, FLUSH_DELAY_MS);
+        }
+    }
+
+    private synchronized void flush() {
+        flushScheduled = false;
+        Map<String, Object> batch = new HashMap<>(dirty);
+        dirty.clear();
+        executor.execute(() -> {
+            SharedPreferences.Editor editor = sharedPreferences.edit();
+            for(Map.Entry<String, Object> entry : batch.entrySet()) {
+                Object value = entry.getValue();
+                if(value == REMOVED) {
+                    editor.remove(entry.getKey());
+                } else if(value instanceof Boolean) {
+                    editor.putBoolean(entry.getKey(), (Boolean) value);
+                } else {
+                    editor.putString(entry.getKey(), (String) value);
+                }
+            }
+            editor.apply();
+        });
+    }
+
+    // Older installs kept large values inside the prefs XML; move them to their own files once.
+    private void migrateBlobs() {
+        for(String key : BLOB_KEYS) {
+            Object value = values.remove(key);
+            if(value instanceof String) {
+                String blob = (String) value;
+                blobs.put(key, blob);
+                executor.execute(() -> {
+                    writeBlob(key, blob);
+                    sharedPreferences.edit().remove(key).apply();
+                });
+            }
+        }
+    }
+
+    private String getBlob(String key) {
+        synchronized(this) {
+            if(blobs.containsKey(key)) {
+                return blobs.get(key);
+            }
+        }
+        String blob = readBlob(key);
+        synchronized(this) {
+            // A value put while the file was being read is newer than the file.
+            if(!blobs.containsKey(key)) {
+                blobs.put(key, blob);
+            }
+            return blobs.get(key);
+        }
+    }
+
+    private String readBlob(String key) {
+        File file = new File(blobDirectory, key);
+        if(!file.exists()) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) file.length()];
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            int offset = 0;
+            while(offset < bytes.length) {
+                int read = inputStream.read(bytes, offset, bytes.length - offset);
+                if(read < 0) {
+                    break;
+                }
+                offset += read;
+            }
+            return new String(bytes, 0, offset, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeBlob(String key, String value) {
+        File file = new File(blobDirectory, key);
+        if(value == null) {
+            file.delete();
+            return;
+        }
+        if(!blobDirectory.exists() && !blobDirectory.mkdirs()) {
+            return;
+        }
+        File temp = new File(blobDirectory, key + ".tmp");
+        try (FileOutputStream outputStream = new FileOutputStream(temp)) {
+            outputStream.write(value.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return;
+        }
+        temp.renameTo(file);
+    }
+}
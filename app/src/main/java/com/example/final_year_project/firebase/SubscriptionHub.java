@@ -0,0 +1,230 @@
+package com.example.final_year_project.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Process-wide registry of Firestore snapshot listeners. Identical queries and documents share one
+ * upstream listener; subscribers are reference counted and the upstream listener is detached a
+ * short grace period after the last one leaves, so a screen that is recreated or reopened reuses
+ * it. Callers whose query changes from one subscription to the next, e.g. because it starts at a
+ * stored watermark, pass a stable key such as the channel id; later subscribers then join the
+ * listener already attached under that key. A listener that fails is forgotten at once so the
+ * next subscriber attaches a fresh one. Subscriptions are bound to a {@link LifecycleOwner} and
+ * dropped on {@code ON_DESTROY}. All methods must be called on the main thread.
+ */
+public class SubscriptionHub {
+
+    private static final long GRACE_PERIOD_MS = 5000;
+
+    private static SubscriptionHub instance;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<Key, Entry<?>> entries = new HashMap<>();
+
+    private SubscriptionHub() {
+    }
+
+    public static synchronized SubscriptionHub getInstance() {
+        if(instance == null) {
+            instance = new SubscriptionHub();
+        }
+        return instance;
+    }
+
+    public ListenerRegistration subscribe(LifecycleOwner owner, Query query, MetadataChanges metadataChanges,
+                                         EventListener<QuerySnapshot> listener) {
+        return subscribe(owner, new Key(query, metadataChanges), query, metadataChanges, listener);
+    }
+
+    /** Shares the listener attached under {@code key}, whatever query it was attached with. */
+    public ListenerRegistration subscribe(LifecycleOwner owner, String key, Query query, MetadataChanges metadataChanges,
+                                         EventListener<QuerySnapshot> listener) {
+        return subscribe(owner, new Key(key, metadataChanges), query, metadataChanges, listener);
+    }
+
+    public ListenerRegistration subscribe(LifecycleOwner owner, Query query, EventListener<QuerySnapshot> listener) {
+        return subscribe(owner, query, MetadataChanges.EXCLUDE, listener);
+    }
+
+    private ListenerRegistration subscribe(LifecycleOwner owner, Key key, Query query, MetadataChanges metadataChanges,
+                                          EventListener<QuerySnapshot> listener) {
+        return subscribe(owner, key, listener, new Upstream<QuerySnapshot>() {
+            @Override
+            public ListenerRegistration attach(EventListener<QuerySnapshot> eventListener) {
+                return query.addSnapshotListener(metadataChanges, eventListener);
+            }
+
+            @Override
+            public void replay(QuerySnapshot last, EventListener<QuerySnapshot> eventListener) {
+                // A late joiner needs every document as ADDED, not the last delta, and the cache
+                // already holds the full result set while the upstream listener is attached.
+                query.get(Source.CACHE).addOnSuccessListener(snapshot -> eventListener.onEvent(snapshot, null));
+            }
+        });
+    }
+
+    public ListenerRegistration subscribe(LifecycleOwner owner, DocumentReference documentReference,
+                                         EventListener<DocumentSnapshot> listener) {
+        return subscribe(owner, new Key(documentReference, MetadataChanges.EXCLUDE), listener, new Upstream<DocumentSnapshot>() {
+            @Override
+            public ListenerRegistration attach(EventListener<DocumentSnapshot> eventListener) {
+                return documentReference.addSnapshotListener(eventListener);
+            }
+
+            @Override
+            public void replay(DocumentSnapshot last, EventListener<DocumentSnapshot> eventListener) {
+                handler.post(() -> eventListener.onEvent(last, null));
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ListenerRegistration subscribe(LifecycleOwner owner, Key key, EventListener<T> listener,
+                                              Upstream<T> upstream) {
+        Entry<T> entry = (Entry<T>) entries.get(key);
+        if(entry == null) {
+            entry = new Entry<>(key);
+            entries.put(key, entry);
+            entry.registration = upstream.attach(entry);
+        } else {
+            handler.removeCallbacks(entry.detach);
+        }
+        entry.listeners.add(listener);
+
+        Entry<T> subscribed = entry;
+        if(entry.last != null) {
+            upstream.replay(entry.last, (value, error) -> {
+                if(subscribed.listeners.contains(listener)) {
+                    listener.onEvent(value, error);
+                }
+            });
+        }
+        LifecycleEventObserver[] observer = new LifecycleEventObserver[1];
+        ListenerRegistration registration = () -> {
+            owner.getLifecycle().removeObserver(observer[0]);
+            unsubscribe(subscribed, listener);
+        };
+        observer[0] = (source, event) -> {
+            if(event == Lifecycle.Event.ON_DESTROY) {
+                registration.remove();
+            }
+        };
+        owner.getLifecycle().addObserver(observer[0]);
+        return registration;
+    }
+
+    /**
+     * Detaches every upstream listener right away, without a grace period, so nothing attached for
+     * one signed-in user can be joined after another user signs in.
+     */
+    public void clear() {
+        for(Entry<?> entry : entries.values()) {
+            handler.removeCallbacks(entry.detach);
+            entry.listeners.clear();
+            entry.registration.remove();
+        }
+        entries.clear();
+    }
+
+    private <T> void unsubscribe(Entry<T> entry, EventListener<T> listener) {
+        if(!entry.listeners.remove(listener) || !entry.listeners.isEmpty()) {
+            return;
+        }
+        handler.removeCallbacks(entry.detach);
+        handler.postDelayed(entry.detach, GRACE_PERIOD_MS);
+    }
+
+    private interface Upstream<T> {
+        ListenerRegistration attach(EventListener<T> eventListener);
+
+        void replay(T last, EventListener<T> eventListener);
+    }
+
+    private class Entry<T> implements EventListener<T> {
+
+        final Key key;
+        final List<EventListener<T>> listeners = new ArrayList<>();
+        ListenerRegistration registration;
+        T last;
+
+        final Runnable detach = new Runnable() {
+            @Override
+            public void run() {
+                if(!listeners.isEmpty()) {
+                    return;
+                }
+                registration.remove();
+                if(entries.get(key) == Entry.this) {
+                    entries.remove(key);
+                }
+            }
+        };
+
+        Entry(Key key) {
+            this.key = key;
+        }
+
+        @Override
+        public void onEvent(T value, FirebaseFirestoreException error) {
+            if(error != null) {
+                // Firestore does not retry a failed listener, e.g. one missing an index.
+                handler.removeCallbacks(detach);
+                registration.remove();
+                if(entries.get(key) == this) {
+                    entries.remove(key);
+                }
+            } else if(value != null) {
+                last = value;
+            }
+            for(EventListener<T> listener : new ArrayList<>(listeners)) {
+                listener.onEvent(value, error);
+            }
+        }
+    }
+
+    private static class Key {
+
+        final Object target;
+        final MetadataChanges metadataChanges;
+
+        Key(Object target, MetadataChanges metadataChanges) {
+            this.target = target;
+            this.metadataChanges = metadataChanges;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return target.equals(other.target) && metadataChanges == other.metadataChanges;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(target, metadataChanges);
+        }
+    }
+}
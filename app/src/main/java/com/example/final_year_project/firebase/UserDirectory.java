@@ -0,0 +1,45 @@
+package com.example.final_year_project.firebase;
+
+import com.example.final_year_project.utilities.Constants;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Lightweight index of users for the "new chat" screen. Each entry holds only what a list row
+ * needs, with lower-cased name and email fields for prefix search.
+ */
+public class UserDirectory {
+
+    // Highest code point in the BMP private use area, so "abc" + PREFIX_END sorts after every "abc..." string.
+    private static final String PREFIX_END = "\uf8ff";
+
+    public static Task<Void> publish(String userId, String name, String email, String imageHash, String lang) {
+        HashMap<String, Object> entry = new HashMap<>();
+        entry.put(Constants.KEY_NAME, name);
+        entry.put(Constants.KEY_NAME_LOWER, name != null ? name.toLowerCase(Locale.ROOT) : null);
+        entry.put(Constants.KEY_EMAIL, email != null ? email.toLowerCase(Locale.ROOT) : null);
+        entry.put(Constants.KEY_IMAGE_HASH, imageHash);
+        entry.put(Constants.KEY_LANGUAGE, lang);
+        return FirebaseFirestore.getInstance()
+                .collection(Constants.KEY_COLLECTION_DIRECTORY)
+                .document(userId)
+                .set(entry, SetOptions.merge());
+    }
+
+    public static Query search(String text) {
+        String prefix = text.trim().toLowerCase(Locale.ROOT);
+        String field = prefix.contains("@") ? Constants.KEY_EMAIL : Constants.KEY_NAME_LOWER;
+        Query query = FirebaseFirestore.getInstance()
+                .collection(Constants.KEY_COLLECTION_DIRECTORY)
+                .orderBy(field);
+        if(!prefix.isEmpty()) {
+            query = query.startAt(prefix).endAt(prefix + PREFIX_END);
+        }
+        return query.limit(Constants.USERS_PAGE_SIZE);
+    }
+}
@@ -1,4 +1,7 @@
 package com.example.final_year_project.listeners;
 
 public interface ChatListener {
+    void onAutoTranslateChanged(boolean enabled);
+
+    void onTranslateOutgoingChanged(boolean enabled);
 }
@@ -3,7 +3,11 @@ package com.example.final_year_project.models;
 import java.util.Date;
 
 public class ChatMessages {
+    public String id;
     public String senderId, receiverId, message, dateTime;
+    public String translatedMessage, translatedLanguage;
     public Date dataObject;
-    public String conversionId, conversionName, conversionImage;
+    public boolean pending;
+    public int unreadCount;
+    public String conversionId, conversionName, conversionImage, conversionImageHash;
 }
@@ -0,0 +1,13 @@
+package com.example.final_year_project.models;
+
+import java.util.Date;
+
+public class OutgoingMessage {
+    public String id, channelId, conversationId, message;
+    public String translatedMessage, translatedLanguage;
+    public String senderId, senderName, senderImage, senderImageHash;
+    public String receiverId, receiverName, receiverImage, receiverImageHash;
+    public Date timestamp;
+    public boolean newConversation;
+    public int attempts;
+}
@@ -1,7 +1,45 @@
 package com.example.final_year_project.models;
 
-import java.io.Serializable;
+import android.os.Parcel;
+import android.os.Parcelable;
 
-public class User implements Serializable {
-    public String name, image, email, token, id, lang;
+/**
+ * A user profile. Only {@link #id} and {@link #version} cross process boundaries: the profile
+ * itself is kept in {@link com.example.final_year_project.utilities.UserCache} and resolved from
+ * there by the receiving activity, so intents stay small however large the profile is.
+ */
+public class User implements Parcelable {
+    public String name, image, imageHash, email, token, id, lang;
+    public long version;
+
+    public User() {
+    }
+
+    protected User(Parcel in) {
+        id = in.readString();
+        version = in.readLong();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(id);
+        dest.writeLong(version);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<User> CREATOR = new Creator<User>() {
+        @Override
+        public User createFromParcel(Parcel in) {
+            return new User(in);
+        }
+
+        @Override
+        public User[] newArray(int size) {
+            return new User[size];
+        }
+    };
 }
@@ -1,19 +1,64 @@
 package com.example.final_year_project.network;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import retrofit2.Retrofit;
 import retrofit2.converter.scalars.ScalarsConverterFactory;
 
 public class ApiClient {
 
+    private static final int MAX_IDLE_CONNECTIONS = 2;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+    private static final long READ_TIMEOUT_SECONDS = 15;
+    private static final long WRITE_TIMEOUT_SECONDS = 15;
+    private static final long CALL_TIMEOUT_SECONDS = 30;
+    private static final int MAX_REQUESTS = 8;
+    private static final int MAX_REQUESTS_PER_HOST = 4;
+
+    private static OkHttpClient httpClient = null;
     private static Retrofit retrofit = null;
+    private static ApiService apiService = null;
 
-    public static Retrofit getClient() {
+    public static synchronized OkHttpClient getHttpClient() {
+        if(httpClient == null) {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(MAX_REQUESTS);
+            dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+            httpClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .dispatcher(dispatcher)
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .writeTimeout(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .callTimeout(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .eventListenerFactory(NetworkMetrics.FACTORY)
+                    .build();
+        }
+        return httpClient;
+    }
+
+    public static synchronized Retrofit getClient() {
         if(retrofit == null) {
             retrofit = new Retrofit.Builder()
                     .baseUrl("https://fcm.googleapis.com/fcm/")
+                    .client(getHttpClient())
                     .addConverterFactory(ScalarsConverterFactory.create())
                     .build();
         }
         return retrofit;
     }
+
+    public static synchronized ApiService getService() {
+        if(apiService == null) {
+            apiService = getClient().create(ApiService.class);
+        }
+        return apiService;
+    }
 }
@@ -0,0 +1,108 @@
+package com.example.final_year_project.network;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+
+/**
+ * Records per-call phase timings (DNS, connect, TLS, time to first byte and total) and logs them
+ * when the call ends. Connect time includes TLS; a reused pooled connection shows up as zero
+ * DNS, connect and TLS time.
+ */
+class NetworkMetrics extends EventListener {
+
+    private static final String TAG = "NetworkMetrics";
+
+    static final EventListener.Factory FACTORY = call -> new NetworkMetrics();
+
+    private long callStart;
+    private long dnsStart, dnsMs;
+    private long connectStart, connectMs;
+    private long tlsStart, tlsMs;
+    private long requestStart, ttfbMs = -1;
+    private Protocol protocol;
+
+    @Override
+    public void callStart(@NonNull Call call) {
+        callStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void dnsStart(@NonNull Call call, @NonNull String domainName) {
+        dnsStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void dnsEnd(@NonNull Call call, @NonNull String domainName, @NonNull List<InetAddress> inetAddressList) {
+        dnsMs += SystemClock.elapsedRealtime() - dnsStart;
+    }
+
+    @Override
+    public void connectStart(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy) {
+        connectStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void secureConnectStart(@NonNull Call call) {
+        tlsStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void secureConnectEnd(@NonNull Call call, @Nullable Handshake handshake) {
+        tlsMs += SystemClock.elapsedRealtime() - tlsStart;
+    }
+
+    @Override
+    public void connectEnd(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress,
+                           @NonNull Proxy proxy, @Nullable Protocol protocol) {
+        connectMs += SystemClock.elapsedRealtime() - connectStart;
+        this.protocol = protocol;
+    }
+
+    @Override
+    public void requestHeadersStart(@NonNull Call call) {
+        requestStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void responseHeadersStart(@NonNull Call call) {
+        if(ttfbMs < 0) {
+            ttfbMs = SystemClock.elapsedRealtime() - requestStart;
+        }
+    }
+
+    @Override
+    public void callEnd(@NonNull Call call) {
+        log(call, "ok");
+    }
+
+    @Override
+    public void callFailed(@NonNull Call call, @NonNull IOException ioe) {
+        log(call, "failed: " + ioe.getMessage());
+    }
+
+    private void log(Call call, String outcome) {
+        long totalMs = SystemClock.elapsedRealtime() - callStart;
+        Log.d(TAG, call.request().url().encodedPath()
+                + " " + outcome
+                + " protocol=" + (protocol != null ? protocol : "reused")
+                + " dns=" + dnsMs + "ms"
+                + " connect=" + connectMs + "ms"
+                + " tls=" + tlsMs + "ms"
+                + " ttfb=" + ttfbMs + "ms"
+                + " total=" + totalMs + "ms");
+    }
+}
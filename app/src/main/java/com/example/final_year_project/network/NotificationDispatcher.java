@@ -0,0 +1,179 @@
+package com.example.final_year_project.network;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.final_year_project.models.OutgoingMessage;
+import com.example.final_year_project.utilities.Constants;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Sends push notifications for messages to offline receivers. Messages for the same receiver are
+ * coalesced for a short window and sent as one request addressed to all of the receiver's tokens,
+ * carrying the latest few messages and the total count. Tokens that FCM reports as
+ * {@code NotRegistered} or {@code InvalidRegistration} are removed from the receiver's user document.
+ */
+public class NotificationDispatcher {
+
+    private static final String TAG = "NotificationDispatcher";
+
+    private static NotificationDispatcher instance;
+
+    private final ApiService apiService;
+    private final long windowMs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, Pending> pending = new HashMap<>();
+
+    public NotificationDispatcher(ApiService apiService, long windowMs) {
+        this.apiService = apiService;
+        this.windowMs = windowMs;
+    }
+
+    public static synchronized NotificationDispatcher getInstance() {
+        if(instance == null) {
+            instance = new NotificationDispatcher(ApiClient.getService(), Constants.NOTIFICATION_WINDOW_MS);
+        }
+        return instance;
+    }
+
+    /** Queues a notification for {@code outgoingMessage}; must be called on the main thread. */
+    public void dispatch(OutgoingMessage outgoingMessage, List<String> receiverTokens, String senderToken) {
+        Pending entry = pending.get(outgoingMessage.receiverId);
+        if(entry == null) {
+            entry = new Pending(outgoingMessage.receiverId);
+            pending.put(outgoingMessage.receiverId, entry);
+            Pending scheduled = entry;
+            handler.postDelayed(() -> flush(scheduled), windowMs);
+        }
+        entry.tokens.addAll(receiverTokens);
+        entry.messages.add(outgoingMessage);
+        entry.senderToken = senderToken;
+    }
+
+    private void flush(Pending entry) {
+        pending.remove(entry.receiverId);
+        if(entry.tokens.isEmpty()) {
+            return;
+        }
+        List<String> tokens = new ArrayList<>(entry.tokens);
+        String body;
+        try {
+            body = buildBody(entry, tokens);
+        } catch (JSONException e) {
+            Log.w(TAG, "Unable to build notification", e);
+            return;
+        }
+        apiService.sendMessage(Constants.getRemoteMsgHeaders(), body).enqueue(new Callback<String>() {
+            @Override
+            public void onResponse(@NonNull Call<String> call, @NonNull Response<String> response) {
+                if(!response.isSuccessful()) {
+                    Log.w(TAG, "Error: " + response.code());
+                    return;
+                }
+                if(response.body() != null) {
+                    pruneFailedTokens(entry.receiverId, tokens, response.body());
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<String> call, @NonNull Throwable t) {
+                Log.w(TAG, "Unable to send notification", t);
+            }
+        });
+    }
+
+    private String buildBody(Pending entry, List<String> tokens) throws JSONException {
+        OutgoingMessage latest = entry.messages.get(entry.messages.size() - 1);
+
+        JSONArray messages = new JSONArray();
+        int from = Math.max(0, entry.messages.size() - Constants.NOTIFICATION_MAX_MESSAGES);
+        for(OutgoingMessage outgoingMessage : entry.messages.subList(from, entry.messages.size())) {
+            JSONObject message = new JSONObject();
+            message.put(Constants.KEY_ID, outgoingMessage.id);
+            message.put(Constants.KEY_MESSAGE, outgoingMessage.message);
+            message.put(Constants.KEY_TIMESTAMP, outgoingMessage.timestamp.getTime());
+            messages.put(message);
+        }
+
+        JSONObject data = new JSONObject();
+        data.put(Constants.KEY_USER_ID, latest.senderId);
+        data.put(Constants.KEY_NAME, latest.senderName);
+        data.put(Constants.KEY_FCM_TOKEN, entry.senderToken);
+        data.put(Constants.KEY_MESSAGE, latest.message);
+        data.put(Constants.REMOTE_MSG_MESSAGES, messages.toString());
+        data.put(Constants.REMOTE_MSG_COUNT, String.valueOf(entry.messages.size()));
+
+        JSONObject body = new JSONObject();
+        body.put(Constants.REMOTE_MSG_DATA, data);
+        body.put(Constants.REMOTE_MSG_REGISTRATION_IDS, new JSONArray(tokens));
+        return body.toString();
+    }
+
+    private void pruneFailedTokens(String receiverId, List<String> tokens, String responseBody) {
+        try {
+            JSONObject responseJson = new JSONObject(responseBody);
+            if(responseJson.optInt("failure") == 0) {
+                return;
+            }
+            JSONArray results = responseJson.getJSONArray("results");
+            for(int i = 0; i < results.length() && i < tokens.size(); i++) {
+                String error = results.getJSONObject(i).optString("error");
+                if("NotRegistered".equals(error) || "InvalidRegistration".equals(error)) {
+                    removeToken(receiverId, tokens.get(i));
+                }
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Unable to parse response", e);
+        }
+    }
+
+    /** Drops {@code token} from the receiver's user and presence documents unless it was replaced meanwhile. */
+    protected void removeToken(String receiverId, String token) {
+        FirebaseFirestore database = FirebaseFirestore.getInstance();
+        DocumentReference documentReference = database.collection(Constants.KEY_COLLECTION_USERS).document(receiverId);
+        DocumentReference presenceReference = database.collection(Constants.KEY_COLLECTION_PRESENCE).document(receiverId);
+        database.runTransaction(transaction -> {
+            DocumentSnapshot documentSnapshot = transaction.get(documentReference);
+            DocumentSnapshot presenceSnapshot = transaction.get(presenceReference);
+            if(token.equals(documentSnapshot.getString(Constants.KEY_FCM_TOKEN))) {
+                transaction.update(documentReference, Constants.KEY_FCM_TOKEN, FieldValue.delete());
+            }
+            if(token.equals(presenceSnapshot.getString(Constants.KEY_FCM_TOKEN))) {
+                transaction.update(presenceReference, Constants.KEY_FCM_TOKEN, null);
+            }
+            return null;
+        });
+    }
+
+    private static class Pending {
+        final String receiverId;
+        final Set<String> tokens = new LinkedHashSet<>();
+        final List<OutgoingMessage> messages = new ArrayList<>();
+        String senderToken;
+
+        Pending(String receiverId) {
+            this.receiverId = receiverId;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.final_year_project.storage;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Profile images stored once per content hash. Every upload produces a small rendition for
+ * list rows and a large one for full size views; Firestore documents only carry the hash.
+ */
+public class AvatarStore {
+
+    public static final String RENDITION_SMALL = "small";
+    public static final String RENDITION_LARGE = "large";
+    public static final int SMALL_SIZE_PX = 128;
+    public static final int LARGE_SIZE_PX = 512;
+
+    private static final int WEBP_QUALITY = 80;
+    private static final int MIN_WEBP_QUALITY = 40;
+    private static final int QUALITY_STEP = 10;
+    private static final int SMALL_MAX_BYTES = 16 * 1024;
+    private static final int LARGE_MAX_BYTES = 64 * 1024;
+
+    private static AvatarStore instance;
+
+    private BlobStore blobStore;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private AvatarStore(BlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    public static synchronized AvatarStore getInstance() {
+        if(instance == null) {
+            instance = new AvatarStore(new FirebaseBlobStore());
+        }
+        return instance;
+    }
+
+    /** Swaps the backing store, e.g. for a {@link FileBlobStore}; never touches Firebase Storage. */
+    public static synchronized void setBlobStore(BlobStore blobStore) {
+        if(instance == null) {
+            instance = new AvatarStore(blobStore);
+        } else {
+            instance.blobStore = blobStore;
+        }
+    }
+
+    public static String renditionFor(int sizePx) {
+        return sizePx <= SMALL_SIZE_PX ? RENDITION_SMALL : RENDITION_LARGE;
+    }
+
+    public Task<String> upload(Bitmap bitmap) {
+        return Tasks.call(executor, () -> new Renditions(bitmap)).onSuccessTask(renditions ->
+                Tasks.whenAll(
+                        blobStore.put(path(renditions.hash, RENDITION_SMALL), renditions.small),
+                        blobStore.put(path(renditions.hash, RENDITION_LARGE), renditions.large)
+                ).continueWith(task -> {
+                    if(!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    return renditions.hash;
+                })
+        );
+    }
+
+    public Task<byte[]> fetch(String hash, String rendition) {
+        return blobStore.get(path(hash, rendition));
+    }
+
+    private static String path(String hash, String rendition) {
+        return "avatars/" + hash + "/" + rendition + ".webp";
+    }
+
+    private static class Renditions {
+        final byte[] small;
+        final byte[] large;
+        final String hash;
+
+        Renditions(Bitmap bitmap) throws Exception {
+            large = encode(scale(bitmap, LARGE_SIZE_PX), LARGE_MAX_BYTES);
+            small = encode(scale(bitmap, SMALL_SIZE_PX), SMALL_MAX_BYTES);
+            hash = sha256(large);
+        }
+
+        private static Bitmap scale(Bitmap bitmap, int sizePx) {
+            int shortSide = Math.min(bitmap.getWidth(), bitmap.getHeight());
+            if(shortSide <= sizePx) {
+                return bitmap;
+            }
+            float ratio = (float) sizePx / shortSide;
+            return Bitmap.createScaledBitmap(
+                    bitmap,
+                    Math.round(bitmap.getWidth() * ratio),
+                    Math.round(bitmap.getHeight() * ratio),
+                    true
+            );
+        }
+
+        // Steps the quality down until the rendition fits its byte budget, stopping at a floor.
+        @SuppressWarnings("deprecation")
+        private static byte[] encode(Bitmap bitmap, int maxBytes) {
+            Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                    ? Bitmap.CompressFormat.WEBP_LOSSY
+                    : Bitmap.CompressFormat.WEBP;
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            int quality = WEBP_QUALITY;
+            while(true) {
+                byteArrayOutputStream.reset();
+                bitmap.compress(format, quality, byteArrayOutputStream);
+                if(byteArrayOutputStream.size() <= maxBytes || quality <= MIN_WEBP_QUALITY) {
+                    return byteArrayOutputStream.toByteArray();
+                }
+                quality -= QUALITY_STEP;
+            }
+        }
+
+        private static String sha256(byte[] data) throws Exception {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder();
+            for(byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.final_year_project.storage;
+
+import com.google.android.gms.tasks.Task;
+
+public interface BlobStore {
+
+    Task<Void> put(String path, byte[] data);
+
+    Task<byte[]> get(String path);
+}
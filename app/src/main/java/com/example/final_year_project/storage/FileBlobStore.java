@@ -0,0 +1,66 @@
+package com.example.final_year_project.storage;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Blob store kept in a local directory. Used in place of Firebase Storage in tests and on
+ * development builds that have no storage bucket configured.
+ */
+public class FileBlobStore implements BlobStore {
+
+    private final File root;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    public FileBlobStore(File root) {
+        this.root = root;
+    }
+
+    @Override
+    public Task<Void> put(String path, byte[] data) {
+        return Tasks.call(executor, () -> {
+            File file = new File(root, path);
+            if(file.exists()) {
+                return null;
+            }
+            File parent = file.getParentFile();
+            if(parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Unable to create " + parent);
+            }
+            try (FileOutputStream outputStream = new FileOutputStream(file)) {
+                outputStream.write(data);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Task<byte[]> get(String path) {
+        return Tasks.call(executor, () -> {
+            File file = new File(root, path);
+            if(!file.exists()) {
+                throw new FileNotFoundException(path);
+            }
+            byte[] data = new byte[(int) file.length()];
+            try (FileInputStream inputStream = new FileInputStream(file)) {
+                int offset = 0;
+                while(offset < data.length) {
+                    int read = inputStream.read(data, offset, data.length - offset);
+                    if(read < 0) {
+                        break;
+                    }
+                    offset += read;
+                }
+            }
+            return data;
+        });
+    }
+}
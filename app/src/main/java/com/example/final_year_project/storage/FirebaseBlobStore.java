@@ -0,0 +1,35 @@
+package com.example.final_year_project.storage;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageReference;
+
+public class FirebaseBlobStore implements BlobStore {
+
+    private static final long MAX_BLOB_BYTES = 1024 * 1024;
+
+    private final FirebaseStorage storage = FirebaseStorage.getInstance();
+
+    // Paths are content addressed, so an existing blob already holds the same bytes and is not uploaded again.
+    @Override
+    public Task<Void> put(String path, byte[] data) {
+        StorageReference reference = storage.getReference(path);
+        return reference.getMetadata().continueWithTask(task -> {
+            if(task.isSuccessful()) {
+                return Tasks.<Void>forResult(null);
+            }
+            return reference.putBytes(data).<Void>continueWith(uploadTask -> {
+                if(!uploadTask.isSuccessful()) {
+                    throw uploadTask.getException();
+                }
+                return null;
+            });
+        });
+    }
+
+    @Override
+    public Task<byte[]> get(String path) {
+        return storage.getReference(path).getBytes(MAX_BLOB_BYTES);
+    }
+}
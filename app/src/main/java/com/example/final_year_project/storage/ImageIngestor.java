@@ -0,0 +1,135 @@
+package com.example.final_year_project.storage;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.net.Uri;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import com.example.final_year_project.utilities.ImageLoader;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Turns a picked gallery image into an avatar-sized bitmap without ever decoding it at full
+ * resolution. Bounds are read first, the centre square is decoded with a power-of-two sample size
+ * (through {@link BitmapRegionDecoder} when the format supports it), then the EXIF orientation is
+ * applied. All of it runs on a worker thread.
+ */
+public class ImageIngestor {
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    public static Task<Bitmap> ingest(ContentResolver contentResolver, Uri uri) {
+        return Tasks.call(executor, () -> decode(contentResolver, uri, AvatarStore.LARGE_SIZE_PX));
+    }
+
+    private static Bitmap decode(ContentResolver contentResolver, Uri uri, int sizePx) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream inputStream = open(contentResolver, uri)) {
+            BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if(options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Unsupported image");
+        }
+        int side = Math.min(options.outWidth, options.outHeight);
+        Rect square = new Rect(
+                (options.outWidth - side) / 2,
+                (options.outHeight - side) / 2,
+                (options.outWidth + side) / 2,
+                (options.outHeight + side) / 2
+        );
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = ImageLoader.calculateInSampleSize(side, side, sizePx);
+
+        Bitmap bitmap = decodeRegion(contentResolver, uri, square, options);
+        if(bitmap == null) {
+            try (InputStream inputStream = open(contentResolver, uri)) {
+                bitmap = BitmapFactory.decodeStream(inputStream, null, options);
+            }
+        }
+        if(bitmap == null) {
+            throw new IOException("Unable to decode image");
+        }
+        return applyOrientation(bitmap, readOrientation(contentResolver, uri));
+    }
+
+    private static Bitmap decodeRegion(ContentResolver contentResolver, Uri uri, Rect region,
+                                       BitmapFactory.Options options) {
+        try (InputStream inputStream = open(contentResolver, uri)) {
+            @SuppressWarnings("deprecation")
+            BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(inputStream, false);
+            try {
+                return decoder.decodeRegion(region, options);
+            } finally {
+                decoder.recycle();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // Not every format supports region decoding; the caller falls back to a full decode.
+            return null;
+        }
+    }
+
+    private static int readOrientation(ContentResolver contentResolver, Uri uri) {
+        try (InputStream inputStream = open(contentResolver, uri)) {
+            return new ExifInterface(inputStream).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    private static Bitmap applyOrientation(Bitmap bitmap, int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                return bitmap;
+        }
+        Bitmap oriented = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if(oriented != bitmap) {
+            bitmap.recycle();
+        }
+        return oriented;
+    }
+
+    private static InputStream open(ContentResolver contentResolver, Uri uri) throws IOException {
+        InputStream inputStream = contentResolver.openInputStream(uri);
+        if(inputStream == null) {
+            throw new IOException("Unable to open " + uri);
+        }
+        return inputStream;
+    }
+}
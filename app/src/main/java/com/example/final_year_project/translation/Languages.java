@@ -0,0 +1,23 @@
+package com.example.final_year_project.translation;
+
+import com.google.firebase.ml.naturallanguage.translate.FirebaseTranslateLanguage;
+
+/** Maps the language names stored on user profiles to ML Kit translate language codes. */
+public class Languages {
+
+    public static final String ENGLISH = "English";
+
+    public static int toCode(String name) {
+        if(name == null) {
+            return FirebaseTranslateLanguage.KN;
+        }
+        switch (name) {
+            case "Hindi":
+                return FirebaseTranslateLanguage.HI;
+            case ENGLISH:
+                return FirebaseTranslateLanguage.EN;
+            default:
+                return FirebaseTranslateLanguage.KN;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.final_year_project.translation;
+
+import android.content.Context;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.ml.common.modeldownload.FirebaseModelDownloadConditions;
+import com.google.firebase.ml.common.modeldownload.FirebaseModelManager;
+import com.google.firebase.ml.naturallanguage.translate.FirebaseTranslateLanguage;
+import com.google.firebase.ml.naturallanguage.translate.FirebaseTranslateRemoteModel;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Downloads the translate model for the signed-in user's language ahead of time, on Wi-Fi while
+ * charging, and deletes downloaded models that neither that language nor recent translations
+ * (see {@link ModelUsage}) need. Progress is published under {@link #PROGRESS_DONE} and
+ * {@link #PROGRESS_TOTAL}.
+ */
+public class ModelProvisioningWorker extends Worker {
+
+    public static final String WORK_NAME = "translation_models";
+    public static final String PROGRESS_DONE = "done";
+    public static final String PROGRESS_TOTAL = "total";
+
+    private static final String KEY_TARGET_LANGUAGE = "targetLanguage";
+
+    public ModelProvisioningWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /** Replaces any pending provisioning with one for {@code language}, e.g. after sign-in or a language change. */
+    public static void schedule(Context context, String language) {
+        Constraints.Builder constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresCharging(true);
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(ModelProvisioningWorker.class)
+                .setConstraints(constraints.build())
+                .setInputData(new Data.Builder().putString(KEY_TARGET_LANGUAGE, language).build())
+                .build();
+        WorkManager.getInstance(context.getApplicationContext())
+                .enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.REPLACE, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Set<Integer> needed = new HashSet<>();
+        needed.add(Languages.toCode(getInputData().getString(KEY_TARGET_LANGUAGE)));
+        needed.remove(FirebaseTranslateLanguage.EN);
+        Set<Integer> keep = new HashSet<>(needed);
+        keep.addAll(ModelUsage.getInstance(getApplicationContext()).recentlyUsed());
+
+        FirebaseModelManager modelManager = FirebaseModelManager.getInstance();
+        FirebaseModelDownloadConditions.Builder conditions = new FirebaseModelDownloadConditions.Builder()
+                .requireWifi();
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            conditions.requireCharging();
+        }
+        try {
+            int done = 0;
+            setProgressAsync(progress(done, needed.size()));
+            for(int language : needed) {
+                FirebaseTranslateRemoteModel model = new FirebaseTranslateRemoteModel.Builder(language).build();
+                Tasks.await(modelManager.download(model, conditions.build()));
+                setProgressAsync(progress(++done, needed.size()));
+            }
+            // English ships with the library and cannot be deleted.
+            for(FirebaseTranslateRemoteModel model
+                    : Tasks.await(modelManager.getDownloadedModels(FirebaseTranslateRemoteModel.class))) {
+                if(model.getLanguage() != FirebaseTranslateLanguage.EN && !keep.contains(model.getLanguage())) {
+                    Tasks.await(modelManager.deleteDownloadedModel(model));
+                }
+            }
+        } catch (Exception e) {
+            return Result.retry();
+        }
+        return Result.success();
+    }
+
+    private static Data progress(int done, int total) {
+        return new Data.Builder()
+                .putInt(PROGRESS_DONE, done)
+                .putInt(PROGRESS_TOTAL, total)
+                .build();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.final_year_project.translation;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers when each translate model was last used by incoming or outgoing translation, so
+ * {@link ModelProvisioningWorker} keeps those models instead of deleting them along with the ones
+ * nobody needs. A language is written at most once a day.
+ */
+public class ModelUsage {
+
+    private static final String PREFERENCE_NAME = "translationModelUsage";
+    private static final long WRITE_INTERVAL_MS = 24 * 60 * 60 * 1000L;
+    private static final long KEEP_FOR_MS = 30 * WRITE_INTERVAL_MS;
+
+    private static ModelUsage instance;
+
+    private final SharedPreferences sharedPreferences;
+    private final Map<Integer, Long> lastUsed = new HashMap<>();
+
+    private ModelUsage(Context context) {
+        sharedPreferences = context.getSharedPreferences(PREFERENCE_NAME, Context.MODE_PRIVATE);
+        for(Map.Entry<String, ?> entry : sharedPreferences.getAll().entrySet()) {
+            if(entry.getValue() instanceof Long) {
+                lastUsed.put(Integer.valueOf(entry.getKey()), (Long) entry.getValue());
+            }
+        }
+    }
+
+    public static synchronized ModelUsage getInstance(Context context) {
+        if(instance == null) {
+            instance = new ModelUsage(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public synchronized void markUsed(int language) {
+        long now = System.currentTimeMillis();
+        Long previous = lastUsed.get(language);
+        if(previous != null && now - previous < WRITE_INTERVAL_MS) {
+            return;
+        }
+        lastUsed.put(language, now);
+        sharedPreferences.edit().putLong(String.valueOf(language), now).apply();
+    }
+
+    /** Languages used within the last {@link #KEEP_FOR_MS}. */
+    public synchronized Set<Integer> recentlyUsed() {
+        long now = System.currentTimeMillis();
+        Set<Integer> languages = new HashSet<>();
+        for(Map.Entry<Integer, Long> entry : lastUsed.entrySet()) {
+            if(now - entry.getValue() < KEEP_FOR_MS) {
+                languages.add(entry.getKey());
+            }
+        }
+        return languages;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.final_year_project.translation;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import com.example.final_year_project.database.LocalStore;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.ml.naturallanguage.FirebaseNaturalLanguage;
+import com.google.firebase.ml.naturallanguage.languageid.FirebaseLanguageIdentification;
+import com.google.firebase.ml.naturallanguage.translate.FirebaseTranslateLanguage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates chat messages through the {@link TranslatorPool} and remembers the results by message
+ * id and target language, in memory and in the local database, so a message is only ever run
+ * through the model once per language. The source language is identified per message. Concurrent
+ * requests for the same message share one translation. Callbacks are delivered on the main
+ * thread with {@code null} when the translation failed.
+ */
+public class TranslationCache {
+
+    private static final int MEMORY_ENTRIES = 200;
+    private static final String UNDETERMINED = "und";
+
+    private static TranslationCache instance;
+
+    private final LocalStore localStore;
+    private final ModelUsage modelUsage;
+    private final LruCache<String, String> memory = new LruCache<>(MEMORY_ENTRIES);
+    private final Map<String, List<LocalStore.Callback<String>>> inFlight = new HashMap<>();
+    private final FirebaseLanguageIdentification languageIdentification =
+            FirebaseNaturalLanguage.getInstance().getLanguageIdentification();
+
+    private TranslationCache(Context context) {
+        localStore = LocalStore.getInstance(context);
+        modelUsage = ModelUsage.getInstance(context);
+    }
+
+    public static synchronized TranslationCache getInstance(Context context) {
+        if(instance == null) {
+            instance = new TranslationCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /** Returns the in-memory translation, if any, without touching disk or the model. */
+    public String peek(String messageId, String targetLanguage) {
+        return memory.get(key(messageId, targetLanguage));
+    }
+
+    /** Must be called on the main thread. */
+    public void translate(String messageId, String text, String targetLanguage, LocalStore.Callback<String> callback) {
+        String key = key(messageId, targetLanguage);
+        String cached = memory.get(key);
+        if(cached != null) {
+            callback.onResult(cached);
+            return;
+        }
+        List<LocalStore.Callback<String>> waiting = inFlight.get(key);
+        if(waiting != null) {
+            waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        inFlight.put(key, waiting);
+
+        localStore.loadTranslation(messageId, targetLanguage, stored -> {
+            if(stored != null) {
+                finish(key, stored);
+                return;
+            }
+            int target = Languages.toCode(targetLanguage);
+            identifyLanguage(text)
+                    .onSuccessTask(source -> {
+                        if(source == target) {
+                            return Tasks.forResult(text);
+                        }
+                        modelUsage.markUsed(source);
+                        modelUsage.markUsed(target);
+                        return TranslatorPool.getInstance().translate(source, target, text);
+                    })
+                    .addOnSuccessListener(translation -> {
+                        // Text already in the target language comes back unchanged; keep it in
+                        // memory only rather than storing a second copy of the message on disk.
+                        if(!translation.equals(text)) {
+                            localStore.saveTranslation(messageId, targetLanguage, translation);
+                        }
+                        finish(key, translation);
+                    })
+                    .addOnFailureListener(e -> finish(key, null));
+        });
+    }
+
+    private Task<Integer> identifyLanguage(String text) {
+        return languageIdentification.identifyLanguage(text).continueWith(task -> {
+            String languageCode = task.isSuccessful() ? task.getResult() : UNDETERMINED;
+            Integer language = UNDETERMINED.equals(languageCode)
+                    ? null
+                    : FirebaseTranslateLanguage.languageForLanguageCode(languageCode);
+            return language != null ? language : FirebaseTranslateLanguage.EN;
+        });
+    }
+
+    private void finish(String key, String translation) {
+        if(translation != null) {
+            memory.put(key, translation);
+        }
+        List<LocalStore.Callback<String>> waiting = inFlight.remove(key);
+        if(waiting != null) {
+            for(LocalStore.Callback<String> callback : waiting) {
+                callback.onResult(translation);
+            }
+        }
+    }
+
+    private static String key(String messageId, String targetLanguage) {
+        return messageId + "|" + targetLanguage;
+    }
+}
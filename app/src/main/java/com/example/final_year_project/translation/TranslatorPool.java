@@ -0,0 +1,96 @@
+package com.example.final_year_project.translation;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.ml.common.modeldownload.FirebaseModelDownloadConditions;
+import com.google.firebase.ml.naturallanguage.FirebaseNaturalLanguage;
+import com.google.firebase.ml.naturallanguage.translate.FirebaseTranslator;
+import com.google.firebase.ml.naturallanguage.translate.FirebaseTranslatorOptions;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded pool of on-device translators keyed by language pair. Each translator checks for its
+ * model once; the least recently used translator is evicted when the pool is full and closed as
+ * soon as the translations still running on it finish, so its native model memory is released.
+ * Models normally arrive through {@link ModelProvisioningWorker}; a missing one is only fetched
+ * here on Wi-Fi, never over metered data.
+ */
+public class TranslatorPool {
+
+    private static final int MAX_TRANSLATORS = 3;
+
+    private static TranslatorPool instance;
+
+    private final Map<String, Entry> translators = new LinkedHashMap<String, Entry>(MAX_TRANSLATORS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if(size() > MAX_TRANSLATORS) {
+                retire(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public static synchronized TranslatorPool getInstance() {
+        if(instance == null) {
+            instance = new TranslatorPool();
+        }
+        return instance;
+    }
+
+    public synchronized Task<String> translate(int sourceLanguage, int targetLanguage, String text) {
+        String key = sourceLanguage + ":" + targetLanguage;
+        Entry entry = translators.get(key);
+        if(entry == null || entry.ready.isCanceled()
+                || (entry.ready.isComplete() && !entry.ready.isSuccessful())) {
+            if(entry != null) {
+                retire(entry);
+            }
+            FirebaseTranslator translator = FirebaseNaturalLanguage.getInstance().getTranslator(
+                    new FirebaseTranslatorOptions.Builder()
+                            .setSourceLanguage(sourceLanguage)
+                            .setTargetLanguage(targetLanguage)
+                            .build()
+            );
+            entry = new Entry(translator,
+                    translator.downloadModelIfNeeded(new FirebaseModelDownloadConditions.Builder().requireWifi().build()));
+            translators.put(key, entry);
+        }
+        Entry acquired = entry;
+        acquired.pending++;
+        return acquired.ready
+                .onSuccessTask(unused -> acquired.translator.translate(text))
+                .continueWithTask(task -> {
+                    release(acquired);
+                    return task;
+                });
+    }
+
+    private void retire(Entry entry) {
+        entry.retired = true;
+        if(entry.pending == 0) {
+            entry.translator.close();
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.pending--;
+        if(entry.retired && entry.pending == 0) {
+            entry.translator.close();
+        }
+    }
+
+    private static class Entry {
+        final FirebaseTranslator translator;
+        final Task<Void> ready;
+        int pending;
+        boolean retired;
+
+        Entry(FirebaseTranslator translator, Task<Void> ready) {
+            this.translator = translator;
+            this.ready = ready;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.final_year_project.utilities;
+
+public class Channels {
+
+    public static String getChannelId(String userId, String otherUserId) {
+        if(userId.compareTo(otherUserId) < 0) {
+            return userId + "_" + otherUserId;
+        } else {
+            return otherUserId + "_" + userId;
+        }
+    }
+}
@@ -8,29 +8,65 @@ public class Constants {
     public static final String KEY_EMAIL = "email";
 
     public static final String KEY_LANGUAGE = "defaultLang";
+    public static final String KEY_AUTO_TRANSLATE = "autoTranslate";
+    public static final String KEY_TRANSLATE_OUTGOING = "translateOutgoing";
     public static final String KEY_PASSWORD = "password";
     public static final String KEY_PREFERENCE_NAME = "chatAppPreference";
     public static final String KEY_IS_SIGNED_IN = "isSignedIn";
+    public static final String KEY_DIRECTORY_PUBLISHED = "directoryPublished";
+    public static final String KEY_LEGACY_MIGRATED = "legacyMigrated";
     public static final String KEY_USER_ID = "userId";
     public static final String KEY_IMAGE = "image";
+    public static final String KEY_IMAGE_HASH = "imageHash";
     public static final String KEY_FCM_TOKEN = "fcmToken";
     public static final String KEY_USER = "user";
     public static final String KEY_COLLECTION_CHAT = "chat";
+    public static final String KEY_COLLECTION_CHANNELS = "channels";
+    public static final String KEY_COLLECTION_MESSAGES = "messages";
+    public static final String KEY_COLLECTION_DIRECTORY = "directory";
+    public static final String KEY_COLLECTION_PRESENCE = "presence";
+    public static final String KEY_NAME_LOWER = "nameLower";
     public static final String KEY_SENDER_ID = "senderId";
     public static final String KEY_RECEIVER_ID = "receiverId";
+    public static final String KEY_ID = "id";
     public static final String KEY_MESSAGE = "message";
+    public static final String KEY_TRANSLATED_MESSAGE = "translatedMessage";
+    public static final String KEY_TRANSLATED_LANGUAGE = "translatedLanguage";
     public static final String KEY_TIMESTAMP = "timestamp";
     public static final String KEY_COLLECTION_CONVERSATIONS = "conversations";
     public static final String KEY_SENDER_NAME = "senderName";
     public static final String KEY_RECEIVER_NAME = "receiverName";
     public static final String KEY_SENDER_IMAGE = "senderImage";
     public static final String KEY_RECEIVER_IMAGE = "receiverImage";
+    public static final String KEY_SENDER_IMAGE_HASH = "senderImageHash";
+    public static final String KEY_RECEIVER_IMAGE_HASH = "receiverImageHash";
     public static final String KEY_LAST_MESSAGE = "lastMessage";
+    public static final String KEY_PARTICIPANTS = "participants";
+    public static final String KEY_UNREAD = "unread";
+    public static final String KEY_LAST_READ = "lastRead";
+    public static final String KEY_UPDATED_AT = "updatedAt";
     public static final String KEY_AVAILABILITY = "availability";
+    public static final String KEY_ONLINE = "online";
+    public static final String KEY_LAST_SEEN = "lastSeen";
     public static final String REMOTE_MSG_AUTHORIZATION = "Authorization";
     public static final String REMOTE_MSG_CONTENT_TYPE = "Content-Type";
     public static final String REMOTE_MSG_DATA = "data";
     public static final String REMOTE_MSG_REGISTRATION_IDS = "registration_ids";
+    public static final String REMOTE_MSG_MESSAGES = "messages";
+    public static final String REMOTE_MSG_COUNT = "count";
+
+    public static final int MESSAGE_PAGE_SIZE = 30;
+    public static final int MESSAGE_WINDOW_SIZE = 150;
+    public static final int MESSAGE_PREFETCH_DISTANCE = 5;
+    public static final int TRANSLATION_PREFETCH_MARGIN = 10;
+    public static final int USERS_PAGE_SIZE = 20;
+    public static final int CONVERSATION_PAGE_SIZE = 20;
+    public static final long SEARCH_DEBOUNCE_MS = 300;
+    public static final long WATERMARK_MARGIN_MS = 300000;
+    public static final long PRESENCE_DEBOUNCE_MS = 3000;
+    public static final long PRESENCE_HEARTBEAT_MS = 60000;
+    public static final long NOTIFICATION_WINDOW_MS = 2000;
+    public static final int NOTIFICATION_MAX_MESSAGES = 5;
 
     public static HashMap<String, String> remoteMsgHeaders = null;
     public static HashMap<String, String> getRemoteMsgHeaders() {
@@ -0,0 +1,73 @@
+package com.example.final_year_project.utilities;
+
+import com.example.final_year_project.models.ChatMessages;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recent conversations indexed by conversation document id and kept newest first, so an
+ * updated conversation is moved to its new row instead of re-sorting and rebinding the list.
+ */
+public class ConversationList extends AbstractList<ChatMessages> {
+
+    public static class Move {
+        public final int from;
+        public final int to;
+
+        Move(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final Comparator<ChatMessages> ORDER = (obj1, obj2) -> {
+        int compare = obj2.dataObject.compareTo(obj1.dataObject);
+        return compare != 0 ? compare : obj1.id.compareTo(obj2.id);
+    };
+
+    private final List<ChatMessages> conversations = new ArrayList<>();
+    private final Map<String, ChatMessages> conversationsById = new HashMap<>();
+
+    /**
+     * Inserts or replaces the conversation with the same id. {@code from} is -1 for a new row.
+     */
+    public Move upsert(ChatMessages conversation) {
+        int from = -1;
+        ChatMessages existing = conversationsById.get(conversation.id);
+        if(existing != null) {
+            from = Collections.binarySearch(conversations, existing, ORDER);
+            conversations.remove(from);
+        }
+        int to = Collections.binarySearch(conversations, conversation, ORDER);
+        to = to < 0 ? -to - 1 : to;
+        conversations.add(to, conversation);
+        conversationsById.put(conversation.id, conversation);
+        return new Move(from, to);
+    }
+
+    public int remove(String id) {
+        ChatMessages existing = conversationsById.remove(id);
+        if(existing == null) {
+            return -1;
+        }
+        int index = Collections.binarySearch(conversations, existing, ORDER);
+        conversations.remove(index);
+        return index;
+    }
+
+    @Override
+    public ChatMessages get(int index) {
+        return conversations.get(index);
+    }
+
+    @Override
+    public int size() {
+        return conversations.size();
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.final_year_project.utilities;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.example.final_year_project.storage.AvatarStore;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads avatars off the main thread, downsampled to the size they are shown at. Images come from
+ * the avatar blob store by content hash, or from the inline base64 field of older accounts.
+ * Source bytes are kept as files in the cache directory, trimmed least recently used first once
+ * they exceed {@link #MAX_DISK_BYTES}, and decoded bitmaps in a memory LRU.
+ */
+public class ImageLoader {
+
+    public interface Callback {
+        void onLoaded(Bitmap bitmap);
+    }
+
+    private static final String TAG = "ImageLoader";
+    private static final int DEFAULT_SIZE_PX = 256;
+    private static final long MAX_DISK_BYTES = 10 * 1024 * 1024;
+
+    private static ImageLoader instance;
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final File diskCacheDir;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private ImageLoader(Context context) {
+        int cacheSizeKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+        memoryCache = new LruCache<String, Bitmap>(cacheSizeKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount() / 1024;
+            }
+        };
+        diskCacheDir = new File(context.getCacheDir(), "avatars");
+    }
+
+    public static synchronized ImageLoader getInstance(Context context) {
+        if(instance == null) {
+            instance = new ImageLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public void load(ImageView imageView, String userId, String imageHash, String encodedImage) {
+        int sizePx = imageView.getLayoutParams() != null && imageView.getLayoutParams().width > 0
+                ? imageView.getLayoutParams().width
+                : DEFAULT_SIZE_PX;
+        String key = memoryKey(userId, imageHash, encodedImage, sizePx);
+        imageView.setTag(key);
+        Bitmap cached = key != null ? memoryCache.get(key) : null;
+        if(cached != null) {
+            imageView.setImageBitmap(cached);
+            return;
+        }
+        imageView.setImageBitmap(null);
+        load(userId, imageHash, encodedImage, sizePx, bitmap -> {
+            if(key != null && key.equals(imageView.getTag())) {
+                imageView.setImageBitmap(bitmap);
+            }
+        });
+    }
+
+    public void load(String userId, String imageHash, String encodedImage, int sizePx, Callback callback) {
+        String key = memoryKey(userId, imageHash, encodedImage, sizePx);
+        if(key == null) {
+            callback.onLoaded(null);
+            return;
+        }
+        Bitmap cached = memoryCache.get(key);
+        if(cached != null) {
+            callback.onLoaded(cached);
+            return;
+        }
+        executor.execute(() -> {
+            Bitmap bitmap = null;
+            try {
+                bitmap = decode(sourceBytes(userId, imageHash, encodedImage, sizePx), sizePx);
+            } catch (Exception e) {
+                Log.w(TAG, "Unable to load avatar " + key, e);
+            }
+            if(bitmap != null) {
+                memoryCache.put(key, bitmap);
+            }
+            Bitmap result = bitmap;
+            mainHandler.post(() -> callback.onLoaded(result));
+        });
+    }
+
+    private String memoryKey(String userId, String imageHash, String encodedImage, int sizePx) {
+        String diskKey = diskKey(userId, imageHash, encodedImage, sizePx);
+        return diskKey != null ? diskKey + "_" + sizePx : null;
+    }
+
+    private String diskKey(String userId, String imageHash, String encodedImage, int sizePx) {
+        if(imageHash != null) {
+            return imageHash + "_" + AvatarStore.renditionFor(sizePx);
+        } else if(encodedImage != null) {
+            return userId + "_" + Integer.toHexString(encodedImage.hashCode());
+        }
+        return null;
+    }
+
+    // Runs on the loader thread: disk tier first, then the blob store or the inline base64 image.
+    private byte[] sourceBytes(String userId, String imageHash, String encodedImage, int sizePx) throws Exception {
+        String key = diskKey(userId, imageHash, encodedImage, sizePx);
+        byte[] bytes = readFromDisk(key);
+        if(bytes != null) {
+            return bytes;
+        }
+        if(imageHash != null) {
+            bytes = Tasks.await(AvatarStore.getInstance().fetch(imageHash, AvatarStore.renditionFor(sizePx)));
+        } else {
+            bytes = Base64.decode(encodedImage, Base64.DEFAULT);
+            // An older account's inline image is keyed by its content, so a changed image leaves the
+            // previous file behind.
+            deleteFromDisk(userId + "_", key);
+        }
+        writeToDisk(key, bytes);
+        return bytes;
+    }
+
+    private Bitmap decode(byte[] bytes, int sizePx) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, sizePx);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    }
+
+    public static int calculateInSampleSize(int width, int height, int sizePx) {
+        int inSampleSize = 1;
+        while(width / (inSampleSize * 2) >= sizePx && height / (inSampleSize * 2) >= sizePx) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    private byte[] readFromDisk(String key) {
+        File file = new File(diskCacheDir, key);
+        if(!file.exists()) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) file.length()];
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            int offset = 0;
+            while(offset < bytes.length) {
+                int read = inputStream.read(bytes, offset, bytes.length - offset);
+                if(read < 0) {
+                    return null;
+                }
+                offset += read;
+            }
+            // Last-modified time is the recency the disk tier is trimmed by.
+            file.setLastModified(System.currentTimeMillis());
+            return bytes;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, byte[] bytes) {
+        if(!diskCacheDir.exists() && !diskCacheDir.mkdirs()) {
+            return;
+        }
+        try (FileOutputStream outputStream = new FileOutputStream(new File(diskCacheDir, key))) {
+            outputStream.write(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to cache avatar " + key, e);
+            return;
+        }
+        trimDisk();
+    }
+
+    private synchronized void deleteFromDisk(String prefix, String keep) {
+        File[] files = diskCacheDir.listFiles();
+        if(files == null) {
+            return;
+        }
+        for(File file : files) {
+            if(file.getName().startsWith(prefix) && !file.getName().equals(keep)) {
+                file.delete();
+            }
+        }
+    }
+
+    private synchronized void trimDisk() {
+        File[] files = diskCacheDir.listFiles();
+        if(files == null) {
+            return;
+        }
+        long total = 0;
+        for(File file : files) {
+            total += file.length();
+        }
+        if(total <= MAX_DISK_BYTES) {
+            return;
+        }
+        Arrays.sort(files, (file1, file2) -> Long.compare(file1.lastModified(), file2.lastModified()));
+        for(File file : files) {
+            if(total <= MAX_DISK_BYTES) {
+                break;
+            }
+            long length = file.length();
+            if(file.delete()) {
+                total -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.final_year_project.utilities;
+
+import com.example.final_year_project.models.ChatMessages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Messages of one chat kept in timestamp order and indexed by document id, so a snapshot
+ * change is applied with a binary search instead of re-sorting the whole list.
+ */
+public class MessageList {
+
+    private static final Comparator<ChatMessages> ORDER = (obj1, obj2) -> {
+        int compare = obj1.dataObject.compareTo(obj2.dataObject);
+        return compare != 0 ? compare : obj1.id.compareTo(obj2.id);
+    };
+
+    private final List<ChatMessages> messages = new ArrayList<>();
+    private final Map<String, ChatMessages> messagesById = new HashMap<>();
+
+    public void upsert(ChatMessages chatMessage) {
+        ChatMessages existing = messagesById.get(chatMessage.id);
+        if(existing != null) {
+            messages.remove(indexOf(existing));
+        }
+        int index = indexOf(chatMessage);
+        messages.add(index < 0 ? -index - 1 : index, chatMessage);
+        messagesById.put(chatMessage.id, chatMessage);
+    }
+
+    public void remove(String id) {
+        ChatMessages existing = messagesById.remove(id);
+        if(existing != null) {
+            messages.remove(indexOf(existing));
+        }
+    }
+
+    public void prepend(List<ChatMessages> olderMessages) {
+        for(ChatMessages chatMessage : olderMessages) {
+            upsert(chatMessage);
+        }
+    }
+
+    public void trimOldest(int count) {
+        List<ChatMessages> evicted = messages.subList(0, count);
+        for(ChatMessages chatMessage : evicted) {
+            messagesById.remove(chatMessage.id);
+        }
+        evicted.clear();
+    }
+
+    public ChatMessages get(int index) {
+        return messages.get(index);
+    }
+
+    public int size() {
+        return messages.size();
+    }
+
+    public List<ChatMessages> snapshot() {
+        return new ArrayList<>(messages);
+    }
+
+    private int indexOf(ChatMessages chatMessage) {
+        return Collections.binarySearch(messages, chatMessage, ORDER);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.final_year_project.utilities;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Cold-start timings: time to first frame of the launch screen and time until it shows real
+ * content. Also lets the launch screen run non-critical work only after its first frame is drawn.
+ */
+public class StartupMetrics {
+
+    private static final String TAG = "StartupMetrics";
+
+    private static long processStart = -1;
+    private static boolean firstFrameReported = false;
+    private static boolean contentReported = false;
+
+    public static void markProcessStart() {
+        processStart = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                ? Process.getStartUptimeMillis()
+                : SystemClock.uptimeMillis();
+    }
+
+    /** Runs {@code afterFirstFrame} on the main thread once {@code root} has drawn its first frame. */
+    public static void onFirstFrame(View root, Runnable afterFirstFrame) {
+        root.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                root.getViewTreeObserver().removeOnPreDrawListener(this);
+                if(!firstFrameReported) {
+                    firstFrameReported = true;
+                    log("time to first frame");
+                }
+                // Posting from pre-draw lands the work after this frame has been drawn.
+                new Handler(Looper.getMainLooper()).post(afterFirstFrame);
+                return true;
+            }
+        });
+    }
+
+    /** Records time to content the first time the launch screen shows real data. */
+    public static void markContentShown(Activity activity) {
+        if(contentReported) {
+            return;
+        }
+        contentReported = true;
+        log("time to content");
+        activity.reportFullyDrawn();
+    }
+
+    private static void log(String phase) {
+        if(processStart < 0) {
+            return;
+        }
+        Log.i(TAG, phase + ": " + (SystemClock.uptimeMillis() - processStart) + "ms");
+    }
+}
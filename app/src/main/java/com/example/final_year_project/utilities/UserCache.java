@@ -0,0 +1,42 @@
+package com.example.final_year_project.utilities;
+
+import android.util.LruCache;
+
+import com.example.final_year_project.models.User;
+
+/**
+ * In-process store of user profiles handed between screens. {@link #put} stamps the profile with
+ * a new version before it goes into an intent; {@link #resolve} turns the id-only copy that comes
+ * out of the intent back into the full profile, or returns {@code null} when the process was
+ * restarted in between and the caller has to load the profile itself.
+ */
+public class UserCache {
+
+    private static final int MAX_USERS = 100;
+
+    private static UserCache instance;
+
+    private final LruCache<String, User> users = new LruCache<>(MAX_USERS);
+    private long nextVersion = 1;
+
+    public static synchronized UserCache getInstance() {
+        if(instance == null) {
+            instance = new UserCache();
+        }
+        return instance;
+    }
+
+    public synchronized User put(User user) {
+        user.version = nextVersion++;
+        users.put(user.id, user);
+        return user;
+    }
+
+    public synchronized User resolve(User reference) {
+        if(reference == null || reference.id == null) {
+            return null;
+        }
+        User user = users.get(reference.id);
+        return user != null && user.version >= reference.version ? user : null;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.final_year_project.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Application;
+import android.os.Looper;
+
+import com.example.final_year_project.models.OutgoingMessage;
+import com.example.final_year_project.utilities.Constants;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+import retrofit2.converter.scalars.ScalarsConverterFactory;
+
+/**
+ * Runs {@link NotificationDispatcher} against a local stand-in for the FCM legacy send endpoint.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class NotificationDispatcherTest {
+
+    private static final long WINDOW_MS = 2000;
+
+    private MockWebServer server;
+    private ExecutorService callExecutor;
+    private RecordingDispatcher dispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        // Calls and their callbacks run on this executor, so awaitResponses() can wait for them.
+        callExecutor = Executors.newSingleThreadExecutor();
+        ApiService apiService = new Retrofit.Builder()
+                .baseUrl(server.url("/fcm/"))
+                .client(new OkHttpClient.Builder().dispatcher(new Dispatcher(callExecutor)).build())
+                .addConverterFactory(ScalarsConverterFactory.create())
+                .build()
+                .create(ApiService.class);
+        dispatcher = new RecordingDispatcher(apiService);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void dispatch_withinWindow_sendsOneRequestToAllTokens() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"success\":2,\"failure\":0}"));
+
+        dispatcher.dispatch(message("m1", "receiver", "one"), Collections.singletonList("token-a"), "sender-token");
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(500));
+        dispatcher.dispatch(message("m2", "receiver", "two"), Arrays.asList("token-a", "token-b"), "sender-token");
+        dispatcher.dispatch(message("m3", "receiver", "three"), Collections.singletonList("token-b"), "sender-token");
+        assertEquals(0, server.getRequestCount());
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(WINDOW_MS));
+
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        assertEquals("/fcm/send", request.getPath());
+        JSONObject body = new JSONObject(request.getBody().readUtf8());
+        JSONArray registrationIds = body.getJSONArray(Constants.REMOTE_MSG_REGISTRATION_IDS);
+        assertEquals(2, registrationIds.length());
+        assertEquals("token-a", registrationIds.getString(0));
+        assertEquals("token-b", registrationIds.getString(1));
+        JSONObject data = body.getJSONObject(Constants.REMOTE_MSG_DATA);
+        assertEquals("3", data.getString(Constants.REMOTE_MSG_COUNT));
+        assertEquals("three", data.getString(Constants.KEY_MESSAGE));
+        assertEquals("sender", data.getString(Constants.KEY_USER_ID));
+        assertEquals(3, new JSONArray(data.getString(Constants.REMOTE_MSG_MESSAGES)).length());
+
+        awaitResponses();
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void dispatch_differentReceivers_sendsOneRequestEach() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"success\":1,\"failure\":0}"));
+        server.enqueue(new MockResponse().setBody("{\"success\":1,\"failure\":0}"));
+
+        dispatcher.dispatch(message("m1", "first", "hello"), Collections.singletonList("token-a"), "sender-token");
+        dispatcher.dispatch(message("m2", "second", "hello"), Collections.singletonList("token-b"), "sender-token");
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(WINDOW_MS));
+
+        awaitResponses();
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void dispatch_prunesUnregisteredAndInvalidTokens() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"success\":1,\"failure\":2,\"results\":["
+                + "{\"error\":\"NotRegistered\"},"
+                + "{\"message_id\":\"0:1\"},"
+                + "{\"error\":\"InvalidRegistration\"}]}"));
+
+        dispatcher.dispatch(message("m1", "receiver", "hello"),
+                Arrays.asList("token-a", "token-b", "token-c"), "sender-token");
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(WINDOW_MS));
+
+        awaitResponses();
+        assertEquals(1, server.getRequestCount());
+        assertEquals(Arrays.asList("receiver:token-a", "receiver:token-c"), dispatcher.removed);
+    }
+
+    @Test
+    public void dispatch_otherErrors_keepTokens() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"success\":0,\"failure\":1,\"results\":["
+                + "{\"error\":\"Unavailable\"}]}"));
+
+        dispatcher.dispatch(message("m1", "receiver", "hello"), Collections.singletonList("token-a"), "sender-token");
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(WINDOW_MS));
+
+        awaitResponses();
+        assertEquals(1, server.getRequestCount());
+        assertTrue(dispatcher.removed.isEmpty());
+    }
+
+    // Every call was enqueued while the main looper ran the flush; once the executor has drained,
+    // their responses have been handled.
+    private void awaitResponses() throws InterruptedException {
+        callExecutor.shutdown();
+        assertTrue(callExecutor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    private static OutgoingMessage message(String id, String receiverId, String text) {
+        OutgoingMessage outgoingMessage = new OutgoingMessage();
+        outgoingMessage.id = id;
+        outgoingMessage.senderId = "sender";
+        outgoingMessage.senderName = "Sender";
+        outgoingMessage.receiverId = receiverId;
+        outgoingMessage.message = text;
+        outgoingMessage.timestamp = new Date();
+        return outgoingMessage;
+    }
+
+    // Records removals instead of writing to Firestore; responses are handled on the call executor.
+    private static class RecordingDispatcher extends NotificationDispatcher {
+
+        final List<String> removed = Collections.synchronizedList(new ArrayList<>());
+
+        RecordingDispatcher(ApiService apiService) {
+            super(apiService, WINDOW_MS);
+        }
+
+        @Override
+        protected void removeToken(String receiverId, String token) {
+            removed.add(receiverId + ":" + token);
+        }
+    }
+}
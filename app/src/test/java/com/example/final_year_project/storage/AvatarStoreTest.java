@@ -0,0 +1,119 @@
+package com.example.final_year_project.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.graphics.Bitmap;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link AvatarStore} against a {@link FileBlobStore} in a temporary directory, without a
+ * FirebaseApp.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+@LooperMode(LooperMode.Mode.INSTRUMENTATION_TEST)
+public class AvatarStoreTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = folder.newFolder("blobs");
+        AvatarStore.setBlobStore(new FileBlobStore(root));
+    }
+
+    @Test
+    public void upload_storesBothRenditionsUnderTheHash() throws Exception {
+        Task<String> upload = complete(AvatarStore.getInstance().upload(bitmap()));
+
+        assertTrue(upload.isSuccessful());
+        String hash = upload.getResult();
+        assertTrue(new File(root, "avatars/" + hash + "/small.webp").exists());
+        assertTrue(new File(root, "avatars/" + hash + "/large.webp").exists());
+    }
+
+    @Test
+    public void upload_sameImageTwice_returnsSameHash() throws Exception {
+        String first = complete(AvatarStore.getInstance().upload(bitmap())).getResult();
+        String second = complete(AvatarStore.getInstance().upload(bitmap())).getResult();
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void fetch_returnsStoredRendition() throws Exception {
+        String hash = complete(AvatarStore.getInstance().upload(bitmap())).getResult();
+
+        Task<byte[]> fetch = complete(AvatarStore.getInstance().fetch(hash, AvatarStore.RENDITION_SMALL));
+
+        assertTrue(fetch.isSuccessful());
+        assertArrayEquals(Files.readAllBytes(new File(root, "avatars/" + hash + "/small.webp").toPath()),
+                fetch.getResult());
+    }
+
+    @Test
+    public void fetch_unknownHash_fails() throws Exception {
+        Task<byte[]> fetch = complete(AvatarStore.getInstance().fetch("missing", AvatarStore.RENDITION_LARGE));
+
+        assertFalse(fetch.isSuccessful());
+        assertTrue(fetch.getException() instanceof FileNotFoundException);
+    }
+
+    @Test
+    public void put_existingPath_keepsFirstBlob() throws Exception {
+        FileBlobStore blobStore = new FileBlobStore(root);
+        byte[] first = "first".getBytes(StandardCharsets.UTF_8);
+        complete(blobStore.put("avatars/abc/small.webp", first));
+        complete(blobStore.put("avatars/abc/small.webp", "second".getBytes(StandardCharsets.UTF_8)));
+
+        assertArrayEquals(first, complete(blobStore.get("avatars/abc/small.webp")).getResult());
+    }
+
+    @Test
+    public void renditionFor_picksSmallUpToItsSize() {
+        assertEquals(AvatarStore.RENDITION_SMALL, AvatarStore.renditionFor(AvatarStore.SMALL_SIZE_PX));
+        assertEquals(AvatarStore.RENDITION_LARGE, AvatarStore.renditionFor(AvatarStore.SMALL_SIZE_PX + 1));
+    }
+
+    private static Bitmap bitmap() {
+        return Bitmap.createBitmap(800, 600, Bitmap.Config.ARGB_8888);
+    }
+
+    // Continuations without an executor run on the main looper, which this looper mode runs on its
+    // own thread, so the test thread can block until the task completes.
+    private static <T> Task<T> complete(Task<T> task) throws Exception {
+        try {
+            Tasks.await(task, TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // Failures are asserted on the task by the caller.
+        }
+        return task;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.final_year_project.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.example.final_year_project.models.ChatMessages;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+public class ConversationListTest {
+
+    @Test
+    public void upsert_newConversations_insertNewestFirst() {
+        ConversationList conversationList = new ConversationList();
+
+        assertMove(-1, 0, conversationList.upsert(conversation("a", 10)));
+        assertMove(-1, 0, conversationList.upsert(conversation("b", 30)));
+        assertMove(-1, 1, conversationList.upsert(conversation("c", 20)));
+
+        assertEquals(Arrays.asList("b", "c", "a"), ids(conversationList));
+    }
+
+    @Test
+    public void upsert_equalTimestamps_ordersById() {
+        ConversationList conversationList = new ConversationList();
+
+        conversationList.upsert(conversation("b", 10));
+        conversationList.upsert(conversation("a", 10));
+        assertMove(-1, 2, conversationList.upsert(conversation("c", 10)));
+
+        assertEquals(Arrays.asList("a", "b", "c"), ids(conversationList));
+    }
+
+    @Test
+    public void upsert_newerMessage_movesRowToTop() {
+        ConversationList conversationList = new ConversationList();
+        conversationList.upsert(conversation("a", 30));
+        conversationList.upsert(conversation("b", 20));
+        conversationList.upsert(conversation("c", 10));
+
+        ChatMessages updated = conversation("c", 40);
+        assertMove(2, 0, conversationList.upsert(updated));
+
+        assertEquals(Arrays.asList("c", "a", "b"), ids(conversationList));
+        assertSame(updated, conversationList.get(0));
+    }
+
+    @Test
+    public void upsert_sameTimestamp_staysInPlace() {
+        ConversationList conversationList = new ConversationList();
+        conversationList.upsert(conversation("a", 30));
+        conversationList.upsert(conversation("b", 20));
+
+        assertMove(1, 1, conversationList.upsert(conversation("b", 20)));
+
+        assertEquals(2, conversationList.size());
+    }
+
+    @Test
+    public void upsert_olderTimestamp_movesRowDown() {
+        ConversationList conversationList = new ConversationList();
+        conversationList.upsert(conversation("a", 30));
+        conversationList.upsert(conversation("b", 20));
+        conversationList.upsert(conversation("c", 10));
+
+        assertMove(0, 2, conversationList.upsert(conversation("a", 5)));
+
+        assertEquals(Arrays.asList("b", "c", "a"), ids(conversationList));
+    }
+
+    @Test
+    public void remove_returnsFormerPosition() {
+        ConversationList conversationList = new ConversationList();
+        conversationList.upsert(conversation("a", 30));
+        conversationList.upsert(conversation("b", 20));
+        conversationList.upsert(conversation("c", 10));
+
+        assertEquals(1, conversationList.remove("b"));
+        assertEquals(-1, conversationList.remove("b"));
+
+        assertEquals(Arrays.asList("a", "c"), ids(conversationList));
+    }
+
+    private static void assertMove(int from, int to, ConversationList.Move move) {
+        assertEquals("from", from, move.from);
+        assertEquals("to", to, move.to);
+    }
+
+    private static ChatMessages conversation(String id, long timestamp) {
+        ChatMessages chatMessages = new ChatMessages();
+        chatMessages.id = id;
+        chatMessages.dataObject = new Date(timestamp);
+        return chatMessages;
+    }
+
+    private static List<String> ids(ConversationList conversationList) {
+        List<String> ids = new ArrayList<>();
+        for(ChatMessages chatMessages : conversationList) {
+            ids.add(chatMessages.id);
+        }
+        return ids;
+    }
+}
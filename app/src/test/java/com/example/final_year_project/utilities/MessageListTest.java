@@ -0,0 +1,103 @@
+package com.example.final_year_project.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.example.final_year_project.models.ChatMessages;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+public class MessageListTest {
+
+    @Test
+    public void upsert_outOfOrder_keepsTimestampOrder() {
+        MessageList messageList = new MessageList();
+
+        messageList.upsert(message("c", 30));
+        messageList.upsert(message("a", 10));
+        messageList.upsert(message("b", 20));
+
+        assertEquals(Arrays.asList("a", "b", "c"), ids(messageList));
+    }
+
+    @Test
+    public void upsert_equalTimestamps_ordersById() {
+        MessageList messageList = new MessageList();
+
+        messageList.upsert(message("b", 10));
+        messageList.upsert(message("c", 10));
+        messageList.upsert(message("a", 10));
+
+        assertEquals(Arrays.asList("a", "b", "c"), ids(messageList));
+    }
+
+    @Test
+    public void upsert_sameId_replacesAndMoves() {
+        MessageList messageList = new MessageList();
+        messageList.upsert(message("a", 10));
+        messageList.upsert(message("b", 20));
+
+        ChatMessages moved = message("a", 30);
+        messageList.upsert(moved);
+
+        assertEquals(Arrays.asList("b", "a"), ids(messageList));
+        assertSame(moved, messageList.get(1));
+    }
+
+    @Test
+    public void remove_dropsOnlyThatMessage() {
+        MessageList messageList = new MessageList();
+        messageList.upsert(message("a", 10));
+        messageList.upsert(message("b", 20));
+        messageList.upsert(message("c", 30));
+
+        messageList.remove("b");
+        messageList.remove("missing");
+
+        assertEquals(Arrays.asList("a", "c"), ids(messageList));
+    }
+
+    @Test
+    public void prepend_overlappingPage_doesNotDuplicate() {
+        MessageList messageList = new MessageList();
+        messageList.upsert(message("c", 30));
+        messageList.upsert(message("d", 40));
+
+        messageList.prepend(Arrays.asList(message("a", 10), message("b", 20), message("c", 30)));
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), ids(messageList));
+    }
+
+    @Test
+    public void trimOldest_forgetsEvictedIds() {
+        MessageList messageList = new MessageList();
+        messageList.upsert(message("a", 10));
+        messageList.upsert(message("b", 20));
+        messageList.upsert(message("c", 30));
+
+        messageList.trimOldest(2);
+        messageList.upsert(message("a", 10));
+
+        assertEquals(Arrays.asList("a", "c"), ids(messageList));
+    }
+
+    private static ChatMessages message(String id, long timestamp) {
+        ChatMessages chatMessage = new ChatMessages();
+        chatMessage.id = id;
+        chatMessage.dataObject = new Date(timestamp);
+        return chatMessage;
+    }
+
+    private static List<String> ids(MessageList messageList) {
+        List<String> ids = new ArrayList<>();
+        for(ChatMessages chatMessage : messageList.snapshot()) {
+            ids.add(chatMessage.id);
+        }
+        return ids;
+    }
+}